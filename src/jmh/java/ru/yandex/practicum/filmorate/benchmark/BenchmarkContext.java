@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Поднимает приложение на встроенной H2 в памяти и заполняет её сгенерированными данными.
+ * Генератор использует фиксированное зерно, поэтому набор данных одинаков для всех запусков и коммитов.
+ */
+public class BenchmarkContext implements AutoCloseable {
+    static final int LIKES_PER_USER = 20;
+    static final int FRIENDS_PER_USER = 20;
+    private static final long SEED = 42;
+    private static final int IMPORT_CHUNK = 50_000;
+
+    private final ConfigurableApplicationContext context;
+    private final List<Integer> filmIds;
+    private final List<Integer> userIds;
+
+    private BenchmarkContext(ConfigurableApplicationContext context, List<Integer> filmIds, List<Integer> userIds) {
+        this.context = context;
+        this.filmIds = filmIds;
+        this.userIds = userIds;
+    }
+
+    /**
+     * Создаёт size фильмов и size пользователей; каждый пользователь ставит лайки
+     * {@link #LIKES_PER_USER} случайным фильмам и добавляет в друзья {@link #FRIENDS_PER_USER} пользователей.
+     */
+    public static BenchmarkContext start(int size, String... properties) {
+        return start(WebApplicationType.NONE, size, properties);
+    }
+
+    /**
+     * То же, что {@link #start(int, String...)}, но со встроенным Tomcat на случайном порту.
+     */
+    public static BenchmarkContext startServer(int size, String... properties) {
+        List<String> args = new ArrayList<>(List.of(properties));
+        args.add("server.port=0");
+        return start(WebApplicationType.SERVLET, size, args.toArray(new String[0]));
+    }
+
+    private static BenchmarkContext start(WebApplicationType type, int size, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(type)
+                .logStartupInfo(false)
+                .run(args.toArray(new String[0]));
+        Random random = new Random(SEED);
+        FilmService filmService = context.getBean(FilmService.class);
+        UserService userService = context.getBean(UserService.class);
+
+        List<User> users = new ArrayList<>(size);
+        List<Film> films = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(User.builder()
+                    .email("user" + i + "@benchmark.ru")
+                    .login("user" + i)
+                    .name("Пользователь " + i)
+                    .birthday(LocalDate.of(1970, 1, 1).plusDays(random.nextInt(15_000)))
+                    .build());
+            films.add(Film.builder()
+                    .name("Фильм " + i)
+                    .description("Описание фильма " + i)
+                    .releaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25_000)))
+                    .duration(60 + random.nextInt(120))
+                    .mpa(MPA.builder().id(1 + random.nextInt(5)).build())
+                    .genres(List.of(Genre.builder().id(1 + random.nextInt(6)).build(),
+                            Genre.builder().id(1 + random.nextInt(6)).build()))
+                    .build());
+        }
+        List<Integer> userIds = importAll(users, userService::createUsers);
+        List<Integer> filmIds = importAll(films, filmService::addFilms);
+
+        List<Like> likes = new ArrayList<>();
+        for (Integer userId : userIds) {
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                likes.add(Like.builder().filmId(filmIds.get(random.nextInt(size))).userId(userId).build());
+            }
+            List<Integer> friendIds = new ArrayList<>(FRIENDS_PER_USER);
+            for (int i = 0; i < FRIENDS_PER_USER; i++) {
+                friendIds.add(userIds.get(random.nextInt(size)));
+            }
+            userService.addFriends(Optional.of(userId), friendIds);
+        }
+        importAll(likes, filmService::addLikes);
+        return new BenchmarkContext(context, filmIds, userIds);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int getPort() {
+        return Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    public Integer randomFilmId(Random random) {
+        return filmIds.get(random.nextInt(filmIds.size()));
+    }
+
+    /**
+     * Один из первых count фильмов.
+     */
+    public Integer trendingFilmId(Random random, int count) {
+        return filmIds.get(random.nextInt(Math.min(count, filmIds.size())));
+    }
+
+    public Integer randomUserId(Random random) {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static <T> List<Integer> importAll(List<T> items, Function<List<T>, BatchResult> importer) {
+        List<Integer> ids = new ArrayList<>(items.size());
+        for (int from = 0; from < items.size(); from += IMPORT_CHUNK) {
+            BatchResult result = importer.apply(items.subList(from, Math.min(from + IMPORT_CHUNK, items.size())));
+            if (!result.getFailures().isEmpty()) {
+                throw new IllegalStateException("Не удалось сгенерировать данные: " + result.getFailures().get(0));
+            }
+            ids.addAll(result.getIds());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.film.LikeIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Зависимость времени расчёта рекомендаций фильмов от количества лайков в базе.
+ * В среднем у пользователя 50 лайков; популярность фильмов неравномерна: квадрат случайного числа
+ * сдвигает лайки к фильмам с меньшими идентификаторами. Рекомендации запрашиваются по очереди для разных
+ * пользователей, чтобы не мерить один и тот же путь по кэшу процессора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FilmRecommenderBenchmark {
+    private static final int LIKES_PER_USER = 50;
+    private static final int FILMS = 10_000;
+    private static final int SAMPLED_USERS = 1024;
+    private static final long SEED = 42;
+    // Ограничения совпадают со значениями по умолчанию из application.properties.
+    private static final int SIMILAR_USERS = 50;
+    private static final int MAX_EDGES = 200_000;
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
+    @Param({"100000", "1000000", "5000000"})
+    private int likes;
+
+    private FilmRecommender recommender;
+    private int[] userIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        int users = likes / LIKES_PER_USER;
+        Map<Integer, int[]> filmsByUserId = new HashMap<>();
+        for (int user = 1; user <= users; user++) {
+            filmsByUserId.put(user, random.doubles()
+                    .mapToInt(r -> 1 + (int) (FILMS * r * r))
+                    .distinct()
+                    .limit(1 + random.nextInt(2 * LIKES_PER_USER - 1))
+                    .toArray());
+        }
+        LikeIndex index = new LikeIndex();
+        index.rebuild(filmsByUserId);
+        recommender = new FilmRecommender(index, SIMILAR_USERS, MAX_EDGES, PARALLEL_THRESHOLD);
+        userIds = random.ints(SAMPLED_USERS, 1, users + 1).toArray();
+    }
+
+    @Benchmark
+    public int[] recommend() {
+        next = (next + 1) & (SAMPLED_USERS - 1);
+        return recommender.recommend(userIds[next], 10);
+    }
+}
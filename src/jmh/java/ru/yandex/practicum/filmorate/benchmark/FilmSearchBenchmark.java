@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время поиска по инвертированному индексу в зависимости от количества фильмов. Тексты собираются
+ * из словаря в 50 000 слов из русских слогов с неравномерной частотой слов, как в естественном языке.
+ * Оценка памяти индекса пишется в лог после его построения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FilmSearchBenchmark {
+    private static final String[] SYLLABLES = {"ка", "ло", "ми", "ре", "то", "на", "ву", "сё", "жи", "пол",
+            "дар", "ски", "мор", "ель", "ган", "тор", "ню", "ща", "бе", "гу"};
+    private static final int VOCABULARY = 50_000;
+    private static final int TITLE_WORDS = 3;
+    private static final int DESCRIPTION_WORDS = 25;
+    private static final int QUERIES = 1024;
+    private static final long SEED = 42;
+
+    @Param({"10000", "100000", "1000000"})
+    private int films;
+
+    private FilmSearchIndex index;
+    private String[] wordQueries;
+    private String[] prefixQueries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int value = i; word.length() == 0 || value > 0; value /= SYLLABLES.length) {
+                word.append(SYLLABLES[value % SYLLABLES.length]);
+            }
+            words[i] = word.toString();
+        }
+        index = new FilmSearchIndex(new SimpleMeterRegistry());
+        FilmSearchIndex.Loader loader = index.loader();
+        for (int id = 1; id <= films; id++) {
+            loader.add(id, text(random, words, TITLE_WORDS), text(random, words, DESCRIPTION_WORDS));
+        }
+        loader.finish();
+        wordQueries = new String[QUERIES];
+        prefixQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            wordQueries[i] = text(random, words, 2);
+            String word = words[pick(random)];
+            prefixQueries[i] = word.substring(0, Math.min(3, word.length()));
+        }
+    }
+
+    @Benchmark
+    public int[] searchWords() {
+        next = (next + 1) & (QUERIES - 1);
+        return index.search(wordQueries[next], true, true, 10);
+    }
+
+    @Benchmark
+    public int[] searchPrefix() {
+        next = (next + 1) & (QUERIES - 1);
+        return index.search(prefixQueries[next], true, false, 10);
+    }
+
+    private static String text(Random random, String[] words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(words[pick(random)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    // Куб равномерного числа смещает выбор к началу словаря: первые слова встречаются намного чаще.
+    private static int pick(Random random) {
+        double r = random.nextDouble();
+        return (int) (VOCABULARY * r * r * r);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDBStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+    @Param({"1000", "10000"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean metrics;
+
+    @Param({"db", "in-memory"})
+    private String storage;
+
+    private BenchmarkContext context;
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(size, "filmorate.metrics.enabled=" + metrics,
+                "spring.profiles.active=" + storage);
+        Class<? extends FilmStorage> type = "in-memory".equals(storage) ? InMemoryFilmStorage.class : FilmDBStorage.class;
+        filmStorage = context.getBean(type);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> getFilmsByCount() {
+        return filmStorage.getFilmsByCount(10, null, null, null);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsByCountFiltered() {
+        return filmStorage.getFilmsByCount(10, 1, 1, 2000);
+    }
+
+    @Benchmark
+    public boolean addLike() {
+        Random random = ThreadLocalRandom.current();
+        return filmStorage.addLike(context.randomFilmId(random), context.randomUserId(random));
+    }
+}
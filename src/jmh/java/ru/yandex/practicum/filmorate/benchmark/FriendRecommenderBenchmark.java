@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendRecommender;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт рекомендаций без кэша для пользователя с 5000 друзей. Режим SampleTime показывает перцентили,
+ * в том числе p99, по которым проверяется бюджет в 10 мс.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FriendRecommenderBenchmark {
+    private static final int USER_ID = 1;
+    private static final int FRIENDS = 5000;
+    private static final long SEED = 42;
+    // Ограничения обхода совпадают со значениями по умолчанию из application.properties.
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_FRIENDS = 1000;
+    private static final int MAX_EDGES = 50_000;
+
+    @Param({"100", "1000"})
+    private int friendsOfFriend;
+
+    private FriendRecommender recommender;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        int users = FRIENDS * 20;
+        Map<Integer, int[]> friends = new HashMap<>();
+        int[] userFriends = new int[FRIENDS];
+        for (int i = 0; i < FRIENDS; i++) {
+            userFriends[i] = USER_ID + 1 + i;
+            int[] ids = new int[friendsOfFriend];
+            for (int j = 0; j < friendsOfFriend; j++) {
+                ids[j] = USER_ID + 1 + random.nextInt(users);
+            }
+            friends.put(userFriends[i], ids);
+        }
+        friends.put(USER_ID, userFriends);
+        FriendGraphIndex index = new FriendGraphIndex();
+        index.rebuild(friends);
+        recommender = new FriendRecommender(index, MAX_LIMIT, MAX_FRIENDS, MAX_EDGES, 10_000, Duration.ofMinutes(10),
+                new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public int[] recommendWithoutCache() {
+        recommender.invalidateAll();
+        return recommender.recommend(USER_ID, 10);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.LikeIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость лайка и его удаления в индексе лайков для «горячего» фильма, которому уже понравилось
+ * {@code likers} пользователей: половина пользователей из диапазона его уже лайкнула, поэтому лайки
+ * и удаления чередуются и размер списка не меняется.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class HotFilmLikeBenchmark {
+    private static final int HOT_FILM_ID = 1;
+
+    @Param({"10000", "1000000"})
+    private int likers;
+
+    private LikeIndex likeIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<Integer, int[]> filmsByUserId = new HashMap<>();
+        for (int user = 1; user <= 2 * likers; user += 2) {
+            filmsByUserId.put(user, new int[]{HOT_FILM_ID});
+        }
+        likeIndex = new LikeIndex();
+        likeIndex.rebuild(filmsByUserId);
+    }
+
+    @Benchmark
+    public boolean toggleLike() {
+        int userId = 1 + ThreadLocalRandom.current().nextInt(2 * likers);
+        if (likeIndex.hasLike(HOT_FILM_ID, userId)) {
+            likeIndex.removeLike(HOT_FILM_ID, userId);
+            return false;
+        }
+        likeIndex.addLike(HOT_FILM_ID, userId);
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест HTTP API в режимах выполнения запросов blocking и async. Каждый поток JMH — отдельный
+ * клиент, который ждёт ответа перед следующим запросом, поэтому пропускная способность и задержки
+ * меряются при 64 одновременных запросах. Пул Tomcat уменьшен до 16 потоков, чтобы запросы упирались в него,
+ * а не в количество клиентов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(64)
+public class HttpLoadBenchmark {
+    @Param({"blocking", "async"})
+    private String mode;
+
+    private BenchmarkContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startServer(10_000,
+                "filmorate.execution.mode=" + mode,
+                "server.tomcat.threads.max=16");
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        baseUrl = "http://localhost:" + context.getPort();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getFilmById() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/films/"
+                + context.randomFilmId(ThreadLocalRandom.current()))).GET());
+    }
+
+    @Benchmark
+    public int getFriends() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/users/"
+                + context.randomUserId(ThreadLocalRandom.current()) + "/friends")).GET());
+    }
+
+    @Benchmark
+    public int addLike() throws IOException, InterruptedException {
+        Random random = ThreadLocalRandom.current();
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/films/" + context.randomFilmId(random)
+                + "/like/" + context.randomUserId(random))).PUT(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Неожиданный код ответа: " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
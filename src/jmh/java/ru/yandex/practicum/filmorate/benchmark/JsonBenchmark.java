@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import ru.yandex.practicum.filmorate.controller.CachedJsonHttpMessageConverter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Сериализация ответов тем же ObjectMapper, которым пользуются контроллеры, и запись тех же ответов
+ * конвертерами: обычным конвертером Jackson и конвертером с кэшем сериализованных фильмов и пользователей.
+ * Копии отличаются от исходных объектов только ссылкой, как фильмы, заново прочитанные из базы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    private BenchmarkContext context;
+    private ObjectMapper objectMapper;
+    private List<Film> films;
+    private List<User> users;
+    private List<Film> filmCopies;
+    private List<User> userCopies;
+    private GenericHttpMessageConverter<Object> jackson;
+    private GenericHttpMessageConverter<Object> cached;
+    private final Type filmsType = ResolvableType.forClassWithGenerics(List.class, Film.class).getType();
+    private final Type usersType = ResolvableType.forClassWithGenerics(List.class, User.class).getType();
+    private final Body body = new Body();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(PAGE_SIZE);
+        objectMapper = context.getBean(ObjectMapper.class);
+        films = context.getBean(FilmStorage.class).getFilmsPage(0, PAGE_SIZE);
+        users = context.getBean(UserStorage.class).getUsersPage(0, PAGE_SIZE);
+        filmCopies = films.stream().map(film -> film.toBuilder().build()).collect(Collectors.toList());
+        userCopies = users.stream().map(user -> user.toBuilder().build()).collect(Collectors.toList());
+        jackson = context.getBean(MappingJackson2HttpMessageConverter.class);
+        cached = context.getBean(CachedJsonHttpMessageConverter.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] serializeFilm() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(films.get(0));
+    }
+
+    @Benchmark
+    public byte[] serializeFilms() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(films);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(users.get(0));
+    }
+
+    @Benchmark
+    public byte[] serializeUsers() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public int writeFilmsJackson() throws IOException {
+        return write(jackson, films, filmsType);
+    }
+
+    @Benchmark
+    public int writeFilmsCached() throws IOException {
+        return write(cached, films, filmsType);
+    }
+
+    @Benchmark
+    public int writeFilmCopiesCached() throws IOException {
+        return write(cached, filmCopies, filmsType);
+    }
+
+    @Benchmark
+    public int writeUsersJackson() throws IOException {
+        return write(jackson, users, usersType);
+    }
+
+    @Benchmark
+    public int writeUsersCached() throws IOException {
+        return write(cached, users, usersType);
+    }
+
+    @Benchmark
+    public int writeUserCopiesCached() throws IOException {
+        return write(cached, userCopies, usersType);
+    }
+
+    private int write(GenericHttpMessageConverter<Object> converter, Object value, Type type) throws IOException {
+        body.reset();
+        converter.write(value, type, MediaType.APPLICATION_JSON, body);
+        return body.size();
+    }
+
+    private static class Body extends ByteArrayOutputStream implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return this;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            headers.clear();
+        }
+    }
+}
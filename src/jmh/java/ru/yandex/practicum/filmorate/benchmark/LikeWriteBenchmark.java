@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время ответа на лайк и его удаление при синхронной записи в базу и при отложенной записи через очередь.
+ * Лайки ставятся небольшому числу «трендовых» фильмов, чтобы пары «фильм — пользователь» повторялись
+ * и очередь их схлопывала, как при волне лайков на один фильм.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LikeWriteBenchmark {
+    private static final int TRENDING_FILMS = 10;
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private BenchmarkContext context;
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(10_000,
+                "filmorate.likes.write-behind.enabled=" + writeBehind,
+                "filmorate.likes.write-behind.queue-capacity=1000000");
+        filmStorage = context.getBean(FilmStorage.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean toggleLike() {
+        Random random = ThreadLocalRandom.current();
+        Integer filmId = context.trendingFilmId(random, TRENDING_FILMS);
+        Integer userId = context.randomUserId(random);
+        return random.nextBoolean()
+                ? filmStorage.addLike(filmId, userId)
+                : filmStorage.deleteLike(filmId, userId);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.metrics.SqlMetricsDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы {@link SqlMetricsDataSource} на один запрос: подготовка, выполнение и закрытие простейшего
+ * запроса к H2 в памяти на уже открытом соединении напрямую и через прокси с таймером.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlMetricsBenchmark {
+    private static final String SELECT = "SELECT 1";
+
+    @Param({"false", "true"})
+    private boolean metered;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:sql-metrics;DB_CLOSE_DELAY=-1");
+        if (metered) {
+            DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+            beans.registerSingleton("meterRegistry", new SimpleMeterRegistry());
+            dataSource = new SqlMetricsDataSource(dataSource, beans.getBeanProvider(MeterRegistry.class));
+        }
+        connection = dataSource.getConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int select() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT);
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDBStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStorageBenchmark {
+    private static final int BULK_SIZE = 10;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    @Param({"db", "in-memory"})
+    private String storage;
+
+    private BenchmarkContext context;
+    private UserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(size, "spring.profiles.active=" + storage);
+        Class<? extends UserStorage> type = "in-memory".equals(storage) ? InMemoryUserStorage.class : UserDBStorage.class;
+        userStorage = context.getBean(type);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> getMutualFriendsById() {
+        Random random = ThreadLocalRandom.current();
+        return userStorage.getMutualFriendsById(context.randomUserId(random), context.randomUserId(random));
+    }
+
+    @Benchmark
+    public Map<Integer, List<User>> getMutualFriendsByIds() {
+        Random random = ThreadLocalRandom.current();
+        List<Integer> otherUserIds = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            otherUserIds.add(context.randomUserId(random));
+        }
+        return userStorage.getMutualFriendsByIds(context.randomUserId(random), otherUserIds);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище в памяти с журналом: время записи 10 млн лайков пакетами (с журналом и без него) и время
+ * восстановления после перезапуска по снимку и журналу с этими лайками. Каждый из {@link #USERS} пользователей
+ * ставит лайки {@link #LIKES_PER_USER} разным фильмам, всего {@link #LIKES} лайков.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class WriteAheadLogBenchmark {
+    private static final int USERS = 100_000;
+    private static final int FILMS = 10_000;
+    private static final int LIKES_PER_USER = 100;
+    private static final int LIKES = USERS * LIKES_PER_USER;
+    private static final int BATCH_SIZE = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class WriteState {
+        @Param({"false", "true"})
+        private boolean wal;
+
+        private Path directory;
+        private BenchmarkContext context;
+        private FilmStorage filmStorage;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("wal-benchmark");
+            context = start(directory, wal);
+            filmStorage = context.getBean(FilmStorage.class);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            context.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RecoveryState {
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("wal-benchmark");
+            try (BenchmarkContext context = start(directory, true)) {
+                writeLikes(context.getBean(FilmStorage.class));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    public int writeLikes(WriteState state) {
+        return writeLikes(state.filmStorage);
+    }
+
+    @Benchmark
+    public int recover(RecoveryState state) {
+        try (BenchmarkContext context = BenchmarkContext.start(0, properties(state.directory, true))) {
+            return context.getBean(FilmStorage.class).getFilmsByCount(1, null, null, null).size();
+        }
+    }
+
+    private static int writeLikes(FilmStorage filmStorage) {
+        int added = 0;
+        List<Like> batch = new ArrayList<>(BATCH_SIZE);
+        for (int userId = 1; userId <= USERS; userId++) {
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                int filmId = 1 + (userId + i * (FILMS / LIKES_PER_USER)) % FILMS;
+                batch.add(Like.builder().filmId(filmId).userId(userId).build());
+                if (batch.size() == BATCH_SIZE) {
+                    added += filmStorage.addLikes(batch);
+                    batch.clear();
+                }
+            }
+        }
+        return added + filmStorage.addLikes(batch);
+    }
+
+    private static BenchmarkContext start(Path directory, boolean wal) {
+        BenchmarkContext context = BenchmarkContext.start(0, properties(directory, wal));
+        UserStorage userStorage = context.getBean(UserStorage.class);
+        FilmStorage filmStorage = context.getBean(FilmStorage.class);
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .email("user" + i + "@benchmark.ru")
+                    .login("user" + i)
+                    .name("Пользователь " + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        userStorage.addUsers(users);
+        List<Film> films = new ArrayList<>(FILMS);
+        for (int i = 0; i < FILMS; i++) {
+            films.add(Film.builder()
+                    .name("Фильм " + i)
+                    .description("Описание фильма " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .mpa(MPA.builder().id(1).build())
+                    .build());
+        }
+        filmStorage.addFilms(films);
+        return context;
+    }
+
+    private static String[] properties(Path directory, boolean wal) {
+        return new String[]{
+                "spring.profiles.active=in-memory",
+                "filmorate.storage.wal.enabled=" + wal,
+                "filmorate.storage.wal.directory=" + directory
+        };
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Отдаёт фильмы, пользователей и их списки из кэша уже сериализованного JSON. Фильм и пользователь неизменяемы,
+ * поэтому байты фильма сериализуются один раз и переиспользуются, пока хранилище возвращает тот же объект
+ * или равный ему; список собирается из байтов элементов без обращения к Jackson. Байты в кэше хранятся вместе
+ * с объектом, из которого получены, и подходят только для равного ему объекта: после обновления фильма
+ * или пользователя они сериализуются заново. Лайки в JSON фильма не входят и кэш не затрагивают.
+ * Так же собирается и {@link MultiGetResult} из фильмов или пользователей.
+ * Остальные ответы и чтение тел запросов остаются за конвертером Jackson.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.http.json-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CachedJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ITEMS = "{\"items\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING_IDS = ",\"missingIds\":".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Integer, Fragment> films;
+    private final Cache<Integer, Fragment> users;
+
+    public CachedJsonHttpMessageConverter(ObjectMapper objectMapper,
+                                          @Value("${filmorate.http.json-cache.maximum-size}") long maximumSize) {
+        super(MediaType.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+        this.films = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.users = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Film.class || clazz == User.class;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        ResolvableType resolvableType = type == null ? ResolvableType.forClass(clazz) : ResolvableType.forType(type);
+        Class<?> resolved = resolvableType.resolve(clazz);
+        if (Collection.class.isAssignableFrom(resolved)) {
+            resolved = resolvableType.asCollection().resolveGeneric(0);
+        } else if (resolved == MultiGetResult.class) {
+            resolved = resolvableType.as(MultiGetResult.class).resolveGeneric(0);
+        }
+        return resolved != null && supports(resolved) && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Конвертер только записывает ответы", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Конвертер только записывает ответы", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        if (object instanceof Collection) {
+            write((Collection<?>) object, body);
+        } else if (object instanceof MultiGetResult) {
+            MultiGetResult<?> result = (MultiGetResult<?>) object;
+            body.write(ITEMS);
+            if (result.getItems() == null) {
+                body.write(NULL);
+            } else {
+                write(result.getItems(), body);
+            }
+            body.write(MISSING_IDS);
+            body.write(objectMapper.writeValueAsBytes(result.getMissingIds()));
+            body.write('}');
+        } else {
+            body.write(json(object));
+        }
+    }
+
+    private void write(Collection<?> items, OutputStream body) throws IOException {
+        body.write('[');
+        boolean first = true;
+        for (Object item : items) {
+            if (!first) {
+                body.write(',');
+            }
+            body.write(json(item));
+            first = false;
+        }
+        body.write(']');
+    }
+
+    private byte[] json(Object object) throws IOException {
+        if (object instanceof Film) {
+            return json(films, ((Film) object).getId(), object);
+        }
+        if (object instanceof User) {
+            return json(users, ((User) object).getId(), object);
+        }
+        return object == null ? NULL : objectMapper.writeValueAsBytes(object);
+    }
+
+    private byte[] json(Cache<Integer, Fragment> cache, Integer id, Object object) throws IOException {
+        if (id == null) {
+            return objectMapper.writeValueAsBytes(object);
+        }
+        Fragment fragment = cache.getIfPresent(id);
+        // equals у фильма и пользователя не учитывает id, но он совпадает с ключом кэша.
+        if (fragment != null && (fragment.source == object || fragment.source.equals(object))) {
+            return fragment.json;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(object);
+        cache.put(id, new Fragment(object, json));
+        return json;
+    }
+
+    private static final class Fragment {
+        private final Object source;
+        private final byte[] json;
+
+        private Fragment(Object source, byte[] json) {
+            this.source = source;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Условные GET-запросы. ETag ответа строится из версии данных, которую хранилище держит в памяти, поэтому
+ * на запрос с совпадающим If-None-Match отвечаем 304 до обращения к базе и до сериализации ответа.
+ * Версии начинаются заново при каждом запуске приложения, поэтому в ETag входит и момент запуска.
+ * Обработчик, для которого {@link #notModified} вернул true, должен вернуть null: тогда Spring MVC
+ * завершает запрос с уже выставленным кодом 304 и без тела.
+ */
+@Slf4j
+@Component
+class ConditionalRequests {
+    private final String instance = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final CacheControl filmsCacheControl;
+    private final CacheControl dictionariesCacheControl;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    ConditionalRequests(@Value("${filmorate.http.cache.films.max-age}") Duration filmsMaxAge,
+                        @Value("${filmorate.http.cache.dictionaries.max-age}") Duration dictionariesMaxAge,
+                        MeterRegistry meterRegistry) {
+        this.filmsCacheControl = cacheControl(filmsMaxAge);
+        this.dictionariesCacheControl = cacheControl(dictionariesMaxAge);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Ответ из фильмов и лайков: меняется часто, поэтому по умолчанию клиент проверяет его при каждом запросе.
+     */
+    boolean filmsNotModified(ServletWebRequest request, String resource, long version) {
+        return notModified(request, resource, version, filmsCacheControl);
+    }
+
+    /**
+     * Ответ из справочников жанров и рейтингов MPA, которые почти не меняются.
+     */
+    boolean dictionaryNotModified(ServletWebRequest request, String resource, long version) {
+        return notModified(request, resource, version, dictionariesCacheControl);
+    }
+
+    private boolean notModified(ServletWebRequest request, String resource, long version,
+                                CacheControl cacheControl) {
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        boolean notModified = request.checkNotModified("\"" + resource + "-" + instance + "-" + version + "\"");
+        counters.computeIfAbsent(resource + (notModified ? ":not-modified" : ":modified"),
+                key -> Counter.builder("filmorate.http.conditional")
+                        .description("GET-запросы с ETag: ответы 304 и полные ответы")
+                        .tag("resource", resource)
+                        .tag("result", notModified ? "not-modified" : "modified")
+                        .register(meterRegistry))
+                .increment();
+        if (notModified) {
+            log.debug("Ответ {} не изменился, отправлен код 304", resource);
+        }
+        return notModified;
+    }
+
+    private static CacheControl cacheControl(Duration maxAge) {
+        if (maxAge.isZero()) {
+            return CacheControl.noCache();
+        }
+        return CacheControl.maxAge(maxAge).cachePublic();
+    }
+}
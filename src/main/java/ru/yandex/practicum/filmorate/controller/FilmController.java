@@ -2,9 +2,15 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.validation.OnCreate;
 import ru.yandex.practicum.filmorate.validation.OnUpdate;
@@ -19,6 +25,8 @@ import java.util.Optional;
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonStreams ndjsonStreams;
+    private final ConditionalRequests conditionalRequests;
 
     @PostMapping
     public Film addFilm(@Validated({OnCreate.class, Default.class}) @RequestBody Film film) {
@@ -28,6 +36,16 @@ public class FilmController {
         return newFilm;
     }
 
+    @PostMapping(path = "/batch")
+    public BatchResult addFilms(@RequestBody List<Film> films) {
+        log.debug("Пришёл запрос на пакетное добавление фильмов. Фильмов в пакете: ({})",
+                films == null ? 0 : films.size());
+        BatchResult result = filmService.addFilms(films);
+        log.debug("Пакетное добавление фильмов завершено. Добавлено: ({}), ошибок: ({})",
+                result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
     @PutMapping
     public Film updateFilm(@Validated({OnUpdate.class, Default.class}) @RequestBody Film film) {
         log.debug("Пришёл запрос на обновление фильма {}", film);
@@ -37,21 +55,70 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<Film> getAllFilms() {
-        log.debug("Пришёл запрос на получение всех фильмов");
-        List<Film> films = filmService.getAllFilms();
-        log.debug("Получение всех фильмов прошло успешно. Получено фильмов: ({})", films.size());
+    public List<Film> getAllFilms(
+            @RequestParam(name = "after", required = false) final Integer after,
+            @RequestParam(name = "limit", required = false) final Integer limit) {
+        if (after == null && limit == null) {
+            log.debug("Пришёл запрос на получение всех фильмов");
+            List<Film> films = filmService.getAllFilms();
+            log.debug("Получение всех фильмов прошло успешно. Получено фильмов: ({})", films.size());
+            return films;
+        }
+        log.debug("Пришёл запрос на получение страницы фильмов после фильма {} размером {}", after, limit);
+        List<Film> films = filmService.getFilmsPage(after, limit);
+        log.debug("Получение страницы фильмов прошло успешно. Получено фильмов: ({})", films.size());
+        return films;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms(
+            @RequestParam(name = "after", required = false) final Integer after) {
+        log.debug("Пришёл запрос на потоковое получение фильмов после фильма {}", after);
+        return ndjsonStreams.stream(filmService.streamFilms(after));
+    }
+
+    @GetMapping(path = "/search")
+    public List<Film> searchFilms(
+            @RequestParam(name = "q", required = false) final String query,
+            @RequestParam(name = "by", required = false) final List<String> by,
+            @RequestParam(name = "limit", required = false) final Integer limit) {
+        log.debug("Пришёл запрос на поиск фильмов по строке \"{}\" в полях {}", query, by);
+        List<Film> films = filmService.searchFilms(query, by, limit);
+        log.debug("Поиск фильмов прошёл успешно. Найдено фильмов: ({})", films.size());
         return films;
     }
 
     @GetMapping(path = "/{id}")
-    public Film getFilmById(@PathVariable(name = "id") final Optional<Integer> id) {
+    public Film getFilmById(@PathVariable(name = "id") final Optional<Integer> id,
+                            final ServletWebRequest request) {
         log.debug("Пришёл запрос на получение фильма по уникальному идентификатору.");
+        if (conditionalRequests.filmsNotModified(request, "film", filmService.getFilmVersion(id))) {
+            return null;
+        }
         Film film = filmService.getFilmById(id);
         log.debug("Получение фильма по уникальному идентификатору прошло успешно. Получен фильм: {}", film);
         return film;
     }
 
+    @GetMapping(params = "ids")
+    public MultiGetResult<Film> getFilmsByIds(@RequestParam(name = "ids") final List<Integer> ids) {
+        return multiGetFilms(ids);
+    }
+
+    @PostMapping(path = "/by-ids")
+    public MultiGetResult<Film> postFilmsByIds(@RequestBody List<Integer> ids) {
+        return multiGetFilms(ids);
+    }
+
+    private MultiGetResult<Film> multiGetFilms(List<Integer> ids) {
+        log.debug("Пришёл запрос на получение фильмов по списку идентификаторов. Идентификаторов: ({})",
+                ids == null ? 0 : ids.size());
+        MultiGetResult<Film> result = filmService.getFilmsByIds(ids);
+        log.debug("Получение фильмов по списку идентификаторов прошло успешно. Найдено: ({}), не найдено: ({})",
+                result.getItems().size(), result.getMissingIds().size());
+        return result;
+    }
+
     @PutMapping(path = "/{id}/like/{userId}")
     public boolean addLike(
             @PathVariable(name = "id") final Optional<Integer> id,
@@ -74,9 +141,17 @@ public class FilmController {
 
     @GetMapping(path = "/popular")
     public List<Film> getFilmsByCount(
-            @RequestParam(name = "count", required = false, defaultValue = "10") final Integer count) {
-        log.debug("Пришёл запрос на список из первых {} фильмов по количеству лайков.", count);
-        List<Film> films = filmService.getFilmsByCount(count);
+            @RequestParam(name = "count", required = false, defaultValue = "10") final Integer count,
+            @RequestParam(name = "genreId", required = false) final Integer genreId,
+            @RequestParam(name = "mpaId", required = false) final Integer mpaId,
+            @RequestParam(name = "year", required = false) final Integer year,
+            final ServletWebRequest request) {
+        log.debug("Пришёл запрос на список из первых {} фильмов по количеству лайков. Жанр: {}, MPA: {}, год: {}",
+                count, genreId, mpaId, year);
+        if (conditionalRequests.filmsNotModified(request, "popular-films", filmService.getFilmsVersion())) {
+            return null;
+        }
+        List<Film> films = filmService.getFilmsByCount(count, genreId, mpaId, year);
         log.debug("Получение списка из первых {} фильмов по количеству лайков прошло успешно.", count);
         return films;
     }
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
@@ -18,19 +19,27 @@ import java.util.Optional;
 @RequestMapping("/genres")
 public class GenreController {
     private final GenreService genreService;
+    private final ConditionalRequests conditionalRequests;
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public List<Genre> getAllGenres(final ServletWebRequest request) {
         log.debug("Пришёл запрос на получение всех жанров");
+        if (conditionalRequests.dictionaryNotModified(request, "genres", genreService.getVersion())) {
+            return null;
+        }
         List<Genre> genres = genreService.getAllGenres();
         log.debug("Получение всех жанров прошло успешно. Получено жанров: ({})", genres.size());
         return genres;
     }
 
     @GetMapping(path = "/{id}")
-    public Genre getGenreById(@PathVariable(name = "id") final Optional<Integer> id) {
+    public Genre getGenreById(@PathVariable(name = "id") final Optional<Integer> id,
+                              final ServletWebRequest request) {
         log.debug("Пришёл запрос на получение жанра по уникальному идентификатору.");
         Genre genre = genreService.getGenreById(id);
+        if (conditionalRequests.dictionaryNotModified(request, "genres", genreService.getVersion())) {
+            return null;
+        }
         log.debug("Получение жанра по уникальному идентификатору прошло успешно. Получен жанр: {}", genre);
         return genre;
     }
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/likes")
+public class LikeController {
+    private final FilmService filmService;
+
+    @PostMapping(path = "/batch")
+    public BatchResult addLikes(@RequestBody List<Like> likes) {
+        log.debug("Пришёл запрос на пакетное добавление лайков. Лайков в пакете: ({})",
+                likes == null ? 0 : likes.size());
+        BatchResult result = filmService.addLikes(likes);
+        log.debug("Пакетное добавление лайков завершено. Добавлено: ({}), ошибок: ({})",
+                result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.MPAService;
 
@@ -18,19 +19,27 @@ import java.util.Optional;
 @RequestMapping("/mpa")
 public class MPAController {
     private final MPAService mpaService;
+    private final ConditionalRequests conditionalRequests;
 
     @GetMapping
-    public List<MPA> getAllMPAs() {
+    public List<MPA> getAllMPAs(final ServletWebRequest request) {
         log.debug("Пришёл запрос на получение всех mpa");
+        if (conditionalRequests.dictionaryNotModified(request, "mpa", mpaService.getVersion())) {
+            return null;
+        }
         List<MPA> mpas = mpaService.getAllMPAs();
         log.debug("Получение всех mpa прошло успешно. Получено mpa: ({})", mpas.size());
         return mpas;
     }
 
     @GetMapping(path = "/{id}")
-    public MPA getFilmById(@PathVariable(name = "id") final Optional<Integer> id) {
+    public MPA getFilmById(@PathVariable(name = "id") final Optional<Integer> id,
+                           final ServletWebRequest request) {
         log.debug("Пришёл запрос на получение mpa по уникальному идентификатору.");
         MPA mpa = mpaService.getMPAById(id);
+        if (conditionalRequests.dictionaryNotModified(request, "mpa", mpaService.getVersion())) {
+            return null;
+        }
         log.debug("Получение mpa по уникальному идентификатору прошло успешно. Получен mpa: {}", mpa);
         return mpa;
     }
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+class NdjsonStreams {
+    private static final int NEW_LINE = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Тело потока само заголовки ответа не выставляет, поэтому тип содержимого задаётся в ResponseEntity.
+     */
+    <T> ResponseEntity<StreamingResponseBody> stream(Consumer<Consumer<T>> source) {
+        ObjectWriter writer = objectMapper.writer();
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(outputStream -> {
+            source.accept(item -> {
+                try {
+                    outputStream.write(writer.writeValueAsBytes(item));
+                    outputStream.write(NEW_LINE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exceptions.TooManyRequestsException;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Режим выполнения запросов async. Обработчики {@link FilmController} и {@link UserController} остаются обычными
+ * синхронными методами, и в режиме blocking (по умолчанию) Spring MVC вызывает их в потоке Tomcat без асинхронной
+ * обработки запроса. В режиме async этот компонент подменяет вызов обработчика: аргументы разбираются в потоке
+ * Tomcat, сам метод выполняется в отдельном ограниченном пуле потоков для работы с базой, а его результат
+ * записывается при повторной диспетчеризации запроса так же, как записал бы его синхронный вызов.
+ * Когда очередь пула заполнена, запрос отклоняется с кодом 429.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.execution.mode", havingValue = "async")
+class RequestExecutor implements WebMvcRegistrations {
+    private static final Set<Class<?>> CONTROLLERS = Set.of(FilmController.class, UserController.class);
+
+    private final ExecutorService executor;
+    private final ThreadLocal<Object[]> concurrentResult = new ThreadLocal<>();
+
+    RequestExecutor(@Value("${filmorate.execution.async.pool-size}") int poolSize,
+                    @Value("${filmorate.execution.async.queue-capacity}") int queueCapacity,
+                    MeterRegistry meterRegistry) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "request-jdbc-" + threads.incrementAndGet()),
+                (runnable, rejected) -> {
+                    throw new TooManyRequestsException("Слишком много запросов, повторите запрос позже");
+                });
+        executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "filmorate.requests");
+        log.info("Запросы выполняются асинхронно: потоков {}, очередь на {} запросов", poolSize, queueCapacity);
+    }
+
+    @Override
+    public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+        return new RequestMappingHandlerAdapter() {
+            @Override
+            protected ModelAndView invokeHandlerMethod(HttpServletRequest request, HttpServletResponse response,
+                                                       HandlerMethod handlerMethod) throws Exception {
+                WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+                if (!isPooled(handlerMethod) || !asyncManager.hasConcurrentResult()) {
+                    return super.invokeHandlerMethod(request, response, handlerMethod);
+                }
+                // Стандартная обёртка берёт тип результата из параметра CompletableFuture в сигнатуре метода,
+                // а методы контроллеров возвращают значения напрямую: готовый результат обрабатываем сами.
+                concurrentResult.set(new Object[]{asyncManager.getConcurrentResult()});
+                asyncManager.clearConcurrentResult();
+                try {
+                    return super.invokeHandlerMethod(request, response, handlerMethod);
+                } finally {
+                    concurrentResult.remove();
+                }
+            }
+
+            @Override
+            protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+                if (!isPooled(handlerMethod)) {
+                    return super.createInvocableHandlerMethod(handlerMethod);
+                }
+                Object[] result = concurrentResult.get();
+                return result == null ? new PooledHandlerMethod(handlerMethod)
+                        : new CompletedHandlerMethod(handlerMethod, result[0]);
+            }
+        };
+    }
+
+    /**
+     * Потоковые ответы и так пишутся асинхронно, их в пул не переносим.
+     */
+    private static boolean isPooled(HandlerMethod handlerMethod) {
+        ResolvableType returnType = ResolvableType.forMethodReturnType(handlerMethod.getMethod());
+        Class<?> body = ResponseEntity.class.isAssignableFrom(returnType.toClass())
+                ? returnType.as(ResponseEntity.class).resolveGeneric(0) : returnType.toClass();
+        return CONTROLLERS.contains(handlerMethod.getBeanType())
+                && (body == null || !StreamingResponseBody.class.isAssignableFrom(body));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Вызывает метод контроллера в пуле; Spring MVC получает CompletableFuture и начинает асинхронную обработку.
+     */
+    private class PooledHandlerMethod extends ServletInvocableHandlerMethod {
+        PooledHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+        }
+
+        @Override
+        protected Object doInvoke(Object... args) {
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return super.doInvoke(args);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            } catch (TooManyRequestsException e) {
+                log.warn("Очередь пула запросов заполнена, запрос отклонён.");
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Повторная диспетчеризация: вместо вызова метода возвращает уже готовый результат, который обрабатывается
+     * по объявленному типу метода, как при синхронном вызове.
+     */
+    private static class CompletedHandlerMethod extends ServletInvocableHandlerMethod {
+        private final Object result;
+
+        CompletedHandlerMethod(HandlerMethod handlerMethod, Object result) {
+            super(handlerMethod);
+            this.result = result;
+        }
+
+        @Override
+        public void invokeAndHandle(ServletWebRequest webRequest, ModelAndViewContainer mavContainer,
+                                    Object... providedArgs) throws Exception {
+            // Ответ 304 выставлен обработчиком ещё в пуле, а признак этого остался в запросе первой диспетчеризации.
+            HttpServletResponse response = webRequest.getResponse();
+            if (result == null && response != null && response.getStatus() == HttpStatus.NOT_MODIFIED.value()) {
+                mavContainer.setRequestHandled(true);
+                return;
+            }
+            super.invokeAndHandle(webRequest, mavContainer, providedArgs);
+        }
+
+        @Override
+        public Object invokeForRequest(NativeWebRequest request, ModelAndViewContainer mavContainer,
+                                       Object... providedArgs) throws Exception {
+            if (result instanceof Exception) {
+                throw (Exception) result;
+            }
+            if (result instanceof Throwable) {
+                throw new ExecutionException((Throwable) result);
+            }
+            return result;
+        }
+    }
+}
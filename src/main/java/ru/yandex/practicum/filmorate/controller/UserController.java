@@ -2,15 +2,23 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.validation.OnCreate;
 import ru.yandex.practicum.filmorate.validation.OnUpdate;
 
 import javax.validation.groups.Default;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -19,6 +27,8 @@ import java.util.Optional;
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonStreams ndjsonStreams;
 
     @PostMapping
     @Validated(OnCreate.class)
@@ -29,6 +39,16 @@ public class UserController {
         return newUser;
     }
 
+    @PostMapping(path = "/batch")
+    public BatchResult createUsers(@RequestBody List<User> users) {
+        log.debug("Пришёл запрос на пакетное создание пользователей. Пользователей в пакете: ({})",
+                users == null ? 0 : users.size());
+        BatchResult result = userService.createUsers(users);
+        log.debug("Пакетное создание пользователей завершено. Создано: ({}), ошибок: ({})",
+                result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
     @PutMapping
     @Validated(OnUpdate.class)
     public User updateUser(@Validated({OnUpdate.class, Default.class}) @RequestBody User user) {
@@ -39,13 +59,31 @@ public class UserController {
     }
 
     @GetMapping
-    public List<User> getAllUsers() {
-        log.debug("Пришёл запрос на получение всех пользователей.");
-        List<User> users = userService.getAllUsers();
-        log.debug("Получение всех пользователей прошло успешно. Получено пользователей: ({})", users.size());
+    public List<User> getAllUsers(
+            @RequestParam(name = "after", required = false) final Integer after,
+            @RequestParam(name = "limit", required = false) final Integer limit) {
+        if (after == null && limit == null) {
+            log.debug("Пришёл запрос на получение всех пользователей.");
+            List<User> users = userService.getAllUsers();
+            log.debug("Получение всех пользователей прошло успешно. Получено пользователей: ({})",
+                    users.size());
+            return users;
+        }
+        log.debug("Пришёл запрос на получение страницы пользователей после пользователя {} размером {}",
+                after, limit);
+        List<User> users = userService.getUsersPage(after, limit);
+        log.debug("Получение страницы пользователей прошло успешно. Получено пользователей: ({})",
+                users.size());
         return users;
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(
+            @RequestParam(name = "after", required = false) final Integer after) {
+        log.debug("Пришёл запрос на потоковое получение пользователей после пользователя {}", after);
+        return ndjsonStreams.stream(userService.streamUsers(after));
+    }
+
     @GetMapping(path = "/{id}")
     public User getUserById(@PathVariable(name = "id") final Optional<Integer> id) {
         log.debug("Пришёл запрос на получение пользователя по его уникальному идентификатору.");
@@ -55,6 +93,25 @@ public class UserController {
         return newUser;
     }
 
+    @GetMapping(params = "ids")
+    public MultiGetResult<User> getUsersByIds(@RequestParam(name = "ids") final List<Integer> ids) {
+        return multiGetUsers(ids);
+    }
+
+    @PostMapping(path = "/by-ids")
+    public MultiGetResult<User> postUsersByIds(@RequestBody List<Integer> ids) {
+        return multiGetUsers(ids);
+    }
+
+    private MultiGetResult<User> multiGetUsers(List<Integer> ids) {
+        log.debug("Пришёл запрос на получение пользователей по списку идентификаторов. Идентификаторов: ({})",
+                ids == null ? 0 : ids.size());
+        MultiGetResult<User> result = userService.getUsersByIds(ids);
+        log.debug("Получение пользователей по списку идентификаторов прошло успешно. " +
+                "Найдено: ({}), не найдено: ({})", result.getItems().size(), result.getMissingIds().size());
+        return result;
+    }
+
     @PutMapping(path = "/{id}/friends/{friendId}")
     public boolean addFriend(
             @PathVariable(name = "id") final Optional<Integer> id,
@@ -66,14 +123,25 @@ public class UserController {
         return isFriend;
     }
 
+    @PostMapping(path = "/{id}/friends/batch")
+    public BatchResult addFriends(
+            @PathVariable(name = "id") final Optional<Integer> id,
+            @RequestBody final List<Integer> friendIds) {
+        log.debug("Пришёл запрос на пакетное добавление друзей пользователя");
+        BatchResult result = userService.addFriends(id, friendIds);
+        log.debug("Пакетное добавление друзей пользователя завершено. Добавлено: ({}), ошибок: ({})",
+                result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
     @DeleteMapping(path = "/{id}/friends/{friendId}")
     public boolean deleteFriend(
             @PathVariable(name = "id") final Optional<Integer> id,
             @PathVariable(name = "friendId") final Optional<Integer> friendId) {
         log.debug("Пришёл запрос на удаление из друзей пользователя");
         boolean isDeleted = userService.deleteFriend(id, friendId);
-        log.debug("Запрос на удаление из друзей прошёл успешно. Теперь пользователи с уникальными идентификаторами" +
-                " {} и {} не являются друзьями", id.get(), friendId.get());
+        log.debug("Запрос на удаление из друзей прошёл успешно. Теперь пользователи с уникальными " +
+                "идентификаторами {} и {} не являются друзьями", id.get(), friendId.get());
         return isDeleted;
     }
 
@@ -96,4 +164,37 @@ public class UserController {
                 "Получено общих друзей: ({})", users.size());
         return users;
     }
+
+    @GetMapping("/{id}/friends/common")
+    public Map<Integer, List<User>> getMutualFriendsByIds(
+            @PathVariable(name = "id") final Optional<Integer> id,
+            @RequestParam(name = "otherIds") final List<Integer> otherIds) {
+        log.debug("Пришёл запрос на получение списков друзей, общих с несколькими пользователями");
+        Map<Integer, List<User>> users = userService.getMutualFriendsByIds(id, otherIds);
+        log.debug("Запрос на получение друзей, общих с несколькими пользователями прошёл успешно. " +
+                "Получено списков общих друзей: ({})", users.size());
+        return users;
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<User> getRecommendations(
+            @PathVariable(name = "id") final Optional<Integer> id,
+            @RequestParam(name = "limit", required = false) final Integer limit) {
+        log.debug("Пришёл запрос на получение рекомендаций друзей для пользователя");
+        List<User> users = userService.getRecommendations(id, limit);
+        log.debug("Запрос на получение рекомендаций друзей прошёл успешно. Получено рекомендаций: ({})",
+                users.size());
+        return users;
+    }
+
+    @GetMapping("/{id}/films/recommendations")
+    public List<Film> getFilmRecommendations(
+            @PathVariable(name = "id") final Optional<Integer> id,
+            @RequestParam(name = "limit", required = false) final Integer limit) {
+        log.debug("Пришёл запрос на получение рекомендаций фильмов для пользователя");
+        List<Film> films = filmService.getRecommendations(id, limit);
+        log.debug("Запрос на получение рекомендаций фильмов прошёл успешно. Получено рекомендаций: ({})",
+                films.size());
+        return films;
+    }
 }
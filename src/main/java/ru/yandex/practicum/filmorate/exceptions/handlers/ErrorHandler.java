@@ -1,36 +1,59 @@
 package ru.yandex.practicum.filmorate.exceptions.handlers;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.servlet.error.ErrorAttributes;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exceptions.ErrorResponse;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.TooManyRequestsException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 
+import javax.servlet.http.HttpServletRequest;
+
 @Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
 
     @ExceptionHandler
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ErrorResponse handleValidationException(final ValidationException exception) {
+    public ResponseEntity<ErrorResponse> handleValidationException(final ValidationException exception,
+                                                                   final HttpServletRequest request) {
+        request.setAttribute(ErrorAttributes.ERROR_ATTRIBUTE, exception);
         log.warn("Ошибка валидации. Были переданы некорректные данные.");
-        return new ErrorResponse("Ошибка валидации", exception.getMessage());
+        return response(HttpStatus.BAD_REQUEST, "Ошибка валидации", exception);
     }
 
     @ExceptionHandler
-    @ResponseStatus(HttpStatus.NOT_FOUND)
-    public ErrorResponse handleNotFoundException(final NotFoundException exception) {
+    public ResponseEntity<ErrorResponse> handleNotFoundException(final NotFoundException exception,
+                                                                 final HttpServletRequest request) {
+        request.setAttribute(ErrorAttributes.ERROR_ATTRIBUTE, exception);
         log.warn("Искомый объект не найден.");
-        return new ErrorResponse("Искомый объект не найден", exception.getMessage());
+        return response(HttpStatus.NOT_FOUND, "Искомый объект не найден", exception);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(final TooManyRequestsException exception,
+                                                                        final HttpServletRequest request) {
+        request.setAttribute(ErrorAttributes.ERROR_ATTRIBUTE, exception);
+        log.warn("Сервер перегружен, запрос отклонён.");
+        return response(HttpStatus.TOO_MANY_REQUESTS, "Слишком много запросов", exception);
     }
 
     @ExceptionHandler
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    public ErrorResponse handleRuntimeException(final RuntimeException exception) {
+    public ResponseEntity<ErrorResponse> handleRuntimeException(final RuntimeException exception,
+                                                                final HttpServletRequest request) {
+        request.setAttribute(ErrorAttributes.ERROR_ATTRIBUTE, exception);
         log.warn("Ошибка во время выполнения запроса.");
-        return new ErrorResponse("Ошибка во время выполнения запроса", exception.getMessage());
+        return response(HttpStatus.INTERNAL_SERVER_ERROR, "Ошибка во время выполнения запроса", exception);
+    }
+
+    // Ошибка отдаётся в JSON, даже если клиент ждал поток NDJSON: иначе тело ошибки нечем записать.
+    private static ResponseEntity<ErrorResponse> response(HttpStatus status, String error, Exception exception) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ErrorResponse(error, exception.getMessage()));
     }
 }
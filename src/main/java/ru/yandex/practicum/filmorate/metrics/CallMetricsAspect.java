@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеряет время каждого публичного вызова сервисов и хранилищ фильмов и пользователей.
+ * Справочники жанров и MPA не замеряются: их вызовы обслуживаются из памяти и выполняются много раз на запрос.
+ * Таймер {@code filmorate.calls} помечается слоем, классом, методом и классом исключения ("none" при успехе),
+ * поэтому количество вызовов с исключением служит счётчиком ошибок.
+ */
+@Aspect
+@RequiredArgsConstructor
+public class CallMetricsAspect {
+    static final String CALLS = "filmorate.calls";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.service..*Service.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "service");
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.film.FilmStorage+.*(..))"
+            + " || execution(public * ru.yandex.practicum.filmorate.storage.user.UserStorage+.*(..))")
+    public Object timeStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "storage");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            successTimers.computeIfAbsent(method, m -> timer(layer, m, "none"))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(layer, method, e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(String layer, Method method, String exception) {
+        return Timer.builder(CALLS)
+                .description("Время вызова методов сервисов и хранилищ")
+                .tag("layer", layer)
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Метрики вызовов сервисов, хранилищ и SQL-запросов. Отключаются свойством {@code filmorate.metrics.enabled=false},
+ * чтобы их накладные расходы можно было сравнить в бенчмарках.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfig {
+
+    @Bean
+    public CallMetricsAspect callMetricsAspect(MeterRegistry meterRegistry) {
+        return new CallMetricsAspect(meterRegistry);
+    }
+
+    /**
+     * Миграции выполняются только при запуске, поэтому их запросы не замеряются.
+     */
+    @Bean
+    public FlywayConfigurationCustomizer flywayWithoutSqlMetrics() {
+        return configuration -> {
+            DataSource dataSource = configuration.getDataSource();
+            if (dataSource instanceof SqlMetricsDataSource) {
+                configuration.dataSource(((SqlMetricsDataSource) dataSource).getTargetDataSource());
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlMetricsDataSource(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof SqlMetricsDataSource)) {
+                    return new SqlMetricsDataSource((DataSource) bean, meterRegistry);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Источник данных, замеряющий выполнение каждого SQL-запроса таймером {@code filmorate.sql} с текстом запроса в тегах.
+ * Все запросы хранилищ заданы константами, поэтому количество различных тегов ограничено. Пакет обычного
+ * Statement помечается текстом своих запросов, если он в пакете один, иначе тегом {@code batch}.
+ * Реестр метрик запрашивается при первом запросе, так как сам он зависит от источника данных (метрики пула).
+ */
+public class SqlMetricsDataSource extends DelegatingDataSource {
+    static final String SQL = "filmorate.sql";
+    // Тег пакета из разных запросов: их тексты в тег не попадают, чтобы число тегов оставалось ограниченным.
+    static final String BATCH = "batch";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+
+    public SqlMetricsDataSource(DataSource dataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return meteredConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return meteredConnection(super.getConnection(username, password));
+    }
+
+    private Connection meteredConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return meteredStatement(PreparedStatement.class, result, (String) args[0]);
+                        case "prepareCall":
+                            return meteredStatement(CallableStatement.class, result, (String) args[0]);
+                        case "createStatement":
+                            return meteredStatement(Statement.class, result, null);
+                        default:
+                            return result;
+                    }
+                });
+    }
+
+    private Object meteredStatement(Class<?> type, Object statement, String preparedSql) {
+        // Запросы, добавленные в пакет обычного Statement через addBatch(String).
+        Set<String> batch = new LinkedHashSet<>();
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            boolean withSql = args != null && args.length > 0 && args[0] instanceof String;
+            if ("addBatch".equals(method.getName()) && withSql) {
+                batch.add((String) args[0]);
+            } else if ("clearBatch".equals(method.getName())) {
+                batch.clear();
+            }
+            if (!method.getName().startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+            String sql;
+            if (preparedSql != null) {
+                sql = preparedSql;
+            } else if (withSql) {
+                sql = (String) args[0];
+            } else {
+                sql = batch.size() == 1 ? batch.iterator().next() : BATCH;
+                batch.clear();
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(statement, method, args);
+                successTimers.computeIfAbsent(sql, s -> timer(s, "none"))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (Throwable e) {
+                timer(sql, e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        });
+    }
+
+    private Timer timer(String sql, String exception) {
+        return Timer.builder(SQL)
+                .description("Время выполнения SQL-запросов")
+                .tag("sql", sql.replaceAll("\\s+", " ").trim())
+                .tag("exception", exception)
+                .register(meterRegistry.getObject());
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder(toBuilder = true)
+public class BatchResult {
+    int total;
+    int succeeded;
+    // Идентификаторы созданных объектов в порядке их следования в запросе
+    List<Integer> ids;
+    List<Failure> failures;
+
+    @Value
+    public static class Failure {
+        // Порядковый номер элемента в запросе, начиная с нуля
+        int index;
+        String message;
+    }
+}
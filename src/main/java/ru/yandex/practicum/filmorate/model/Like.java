@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+@Value
+@Builder(toBuilder = true)
+public class Like {
+    @NotNull(message = "Укажите уникальный идентификатор фильма")
+    @Positive(message = "Уникальный идентификатор фильма должен быть положительным")
+    Integer filmId;
+    @NotNull(message = "Укажите уникальный идентификатор пользователя")
+    @Positive(message = "Уникальный идентификатор пользователя должен быть положительным")
+    Integer userId;
+}
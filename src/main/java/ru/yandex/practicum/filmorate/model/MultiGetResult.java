@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder(toBuilder = true)
+public class MultiGetResult<T> {
+    // Найденные объекты в порядке их идентификаторов в запросе, без повторов
+    List<T> items;
+    // Идентификаторы из запроса, для которых объектов не нашлось
+    List<Integer> missingIds;
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная запись: каждый элемент проверяется отдельно, прошедшие проверку элементы записываются
+ * частями по {@link #CHUNK_SIZE}, и каждая часть фиксируется в своей транзакции. Если часть не удалось
+ * записать целиком, её элементы записываются по одному, чтобы указать в ответе именно ошибочные.
+ */
+@Slf4j
+final class BatchProcessor {
+    static final int MAX_BATCH_SIZE = 100_000;
+    static final int CHUNK_SIZE = 1_000;
+
+    private BatchProcessor() {
+    }
+
+    /**
+     * @param check       возвращает описание ошибки элемента или null, если элемент можно записывать
+     * @param chunkWriter записывает часть пакета и возвращает идентификаторы созданных объектов (или пустой список)
+     * @param itemWriter  записывает один элемент и возвращает идентификатор созданного объекта (или null)
+     */
+    static <T> BatchResult process(List<T> items, Function<T, String> check,
+                                   Function<List<T>, List<Integer>> chunkWriter, Function<T, Integer> itemWriter) {
+        if (items == null || items.size() > MAX_BATCH_SIZE) {
+            log.warn("Пакет не передан или содержит больше {} элементов", MAX_BATCH_SIZE);
+            throw new ValidationException("Пакет должен содержать не больше " + MAX_BATCH_SIZE + " элементов");
+        }
+        List<BatchResult.Failure> failures = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            String error = item == null ? "Элемент пакета не может быть пустым" : check.apply(item);
+            if (error == null) {
+                indexes.add(i);
+            } else {
+                failures.add(new BatchResult.Failure(i, error));
+            }
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int from = 0; from < indexes.size(); from += CHUNK_SIZE) {
+            List<Integer> chunkIndexes = indexes.subList(from, Math.min(from + CHUNK_SIZE, indexes.size()));
+            List<T> chunk = chunkIndexes.stream().map(items::get).collect(Collectors.toList());
+            try {
+                ids.addAll(chunkWriter.apply(chunk));
+            } catch (DataAccessException e) {
+                log.warn("Не удалось записать часть пакета целиком, элементы будут записаны по одному", e);
+                for (Integer index : chunkIndexes) {
+                    try {
+                        Integer id = itemWriter.apply(items.get(index));
+                        if (id != null) {
+                            ids.add(id);
+                        }
+                    } catch (NotFoundException | ValidationException ex) {
+                        failures.add(new BatchResult.Failure(index, ex.getMessage()));
+                    } catch (DataAccessException ex) {
+                        failures.add(new BatchResult.Failure(index,
+                                "Не удалось сохранить элемент: " + ex.getMostSpecificCause().getMessage()));
+                    }
+                }
+            }
+        }
+        failures.sort((left, right) -> Integer.compare(left.getIndex(), right.getIndex()));
+        log.debug("Пакет обработан. Элементов: ({}), ошибок: ({})", items.size(), failures.size());
+        return BatchResult.builder()
+                .total(items.size())
+                .succeeded(items.size() - failures.size())
+                .ids(ids)
+                .failures(failures)
+                .build();
+    }
+
+    static String violations(Validator validator, Object item, Class<?>... groups) {
+        String message = validator.validate(item, groups).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+        return message.isEmpty() ? null : message;
+    }
+}
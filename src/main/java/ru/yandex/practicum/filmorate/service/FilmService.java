@@ -4,22 +4,58 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MPAStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.validation.OnCreate;
 
-import java.util.List;
-import java.util.Optional;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_IDS = 1000;
+    private static final int DEFAULT_RECOMMENDATIONS_LIMIT = 10;
+    private static final int MAX_RECOMMENDATIONS_LIMIT = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final String BY_TITLE = "title";
+    private static final String BY_DESCRIPTION = "description";
+
     private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final MPAStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final Validator validator;
 
     public Film addFilm(Film film) {
         return filmStorage.addFilm(film);
     }
 
+    public BatchResult addFilms(List<Film> films) {
+        return BatchProcessor.process(films,
+                film -> {
+                    String violations = BatchProcessor.violations(validator, film, OnCreate.class, Default.class);
+                    return violations != null ? violations : checkReferences(film);
+                },
+                chunk -> filmStorage.addFilms(chunk).stream().map(Film::getId).collect(Collectors.toList()),
+                film -> filmStorage.addFilm(film).getId());
+    }
+
     public Film updateFilm(Film film) {
         return filmStorage.updateFilm(film);
     }
@@ -28,17 +64,48 @@ public class FilmService {
         return filmStorage.getAllFilms();
     }
 
+    public List<Film> getFilmsPage(Integer after, Integer limit) {
+        int afterId = validateCursor(after);
+        if (limit == null) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            log.warn("Запрошена страница фильмов недопустимого размера {}", limit);
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    /**
+     * Проверяет курсор сразу, чтобы ошибка вернулась до начала ответа, а фильмы передаёт получателю уже
+     * при записи ответа.
+     */
+    public Consumer<Consumer<Film>> streamFilms(Integer after) {
+        int afterId = validateCursor(after);
+        return action -> filmStorage.streamFilms(afterId, action);
+    }
+
     public Film getFilmById(final Optional<Integer> id) {
-        if (id.isEmpty()) {
-            log.warn("Попытка получить фильм с пустым уникальным идентификатором");
-            throw new NotFoundException("Уникальный идентификатор фильма не может быть пустым");
+        return filmStorage.getFilmById(validateFilmId(id));
+    }
+
+    public MultiGetResult<Film> getFilmsByIds(List<Integer> ids) {
+        if (ids == null || ids.contains(null)) {
+            log.warn("Запрошены фильмов по списку с пустыми идентификаторами");
+            throw new ValidationException("Список идентификаторов фильмов не может быть пустым " +
+                    "или содержать пустые значения");
         }
-        Integer filmId = id.get();
-        if (filmId <= 0) {
-            log.warn("Попытка получить фильм с неположительным уникальным идентификатором");
-            throw new NotFoundException("Уникальный идентификатор фильма не может быть отрицательным или равным нулю");
+        List<Integer> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.size() > MAX_IDS) {
+            log.warn("Запрошены фильмов сразу по {} идентификаторам", distinctIds.size());
+            throw new ValidationException("За запрос можно получить не более " + MAX_IDS + " фильмов");
         }
-        return filmStorage.getFilmById(filmId);
+        List<Film> films = filmStorage.getFilmsByIds(distinctIds);
+        Set<Integer> foundIds = films.stream().map(Film::getId).collect(Collectors.toSet());
+        return MultiGetResult.<Film>builder()
+                .items(films)
+                .missingIds(distinctIds.stream().filter(id -> !foundIds.contains(id)).collect(Collectors.toList()))
+                .build();
     }
 
     public boolean addLike(final Optional<Integer> id, final Optional<Integer> userIdOptional) {
@@ -64,6 +131,43 @@ public class FilmService {
         return filmStorage.addLike(filmId, userId);
     }
 
+    public BatchResult addLikes(List<Like> likes) {
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        if (likes != null) {
+            likes.stream().filter(Objects::nonNull).forEach(like -> {
+                filmIds.add(like.getFilmId());
+                userIds.add(like.getUserId());
+            });
+            filmIds.remove(null);
+            userIds.remove(null);
+        }
+        Set<Integer> existingFilmIds = filmStorage.findFilmIds(filmIds);
+        Set<Integer> existingUserIds = userStorage.findUserIds(userIds);
+        return BatchProcessor.process(likes,
+                like -> {
+                    String violations = BatchProcessor.violations(validator, like);
+                    if (violations != null) {
+                        return violations;
+                    }
+                    if (!existingFilmIds.contains(like.getFilmId())) {
+                        return "Фильм с идентификатором id = " + like.getFilmId() + " не существует";
+                    }
+                    if (!existingUserIds.contains(like.getUserId())) {
+                        return "Пользователь с идентификатором id = " + like.getUserId() + " не существует";
+                    }
+                    return null;
+                },
+                chunk -> {
+                    filmStorage.addLikes(chunk);
+                    return List.of();
+                },
+                like -> {
+                    filmStorage.addLike(like.getFilmId(), like.getUserId());
+                    return null;
+                });
+    }
+
     public boolean deleteLike(final Optional<Integer> id, final Optional<Integer> userIdOptional) {
         if (id.isEmpty()) {
             log.warn("Попытка удалить лайк с фильма с пустым уникальным идентификатором");
@@ -87,15 +191,120 @@ public class FilmService {
         return filmStorage.deleteLike(filmId, userId);
     }
 
-    public List<Film> getFilmsByCount(Integer count) {
+    public long getFilmsVersion() {
+        return filmStorage.getVersion();
+    }
+
+    /**
+     * Версия фильма для условного запроса; идентификатор проверяется так же, как при получении фильма.
+     */
+    public long getFilmVersion(final Optional<Integer> id) {
+        return filmStorage.getFilmVersion(validateFilmId(id));
+    }
+
+    public List<Film> getFilmsByCount(Integer count, Integer genreId, Integer mpaId, Integer year) {
         if (count <= 0) {
             log.warn("Пользователь ввёл отрицательное количество фильмов.");
             throw new NotFoundException("Количество фильмов не может быть отрицательным.");
         }
-        List<Film> films = filmStorage.getAllFilms();
-        if (films.size() < count) {
-            count = films.size();
+        if (genreId != null) {
+            genreStorage.getGenreById(genreId);
+        }
+        if (mpaId != null) {
+            mpaStorage.getMPAById(mpaId);
+        }
+        if (year != null && year <= 0) {
+            log.warn("Запрошены популярные фильмы с неположительным годом выпуска {}", year);
+            throw new ValidationException("Год выпуска должен быть положительным");
+        }
+        return filmStorage.getFilmsByCount(count, genreId, mpaId, year);
+    }
+
+    public List<Film> getRecommendations(final Optional<Integer> id, final Integer limit) {
+        if (id.isEmpty()) {
+            log.warn("Попытка получить рекомендации фильмов для пользователя с пустым уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть пустым");
+        }
+        Integer userId = id.get();
+        if (userId <= 0) {
+            log.warn("Попытка получить рекомендации фильмов для пользователя с неположительным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть отрицательным " +
+                    "или равным нулю");
+        }
+        int size = limit == null ? DEFAULT_RECOMMENDATIONS_LIMIT : limit;
+        if (size <= 0 || size > MAX_RECOMMENDATIONS_LIMIT) {
+            log.warn("Запрошено некорректное количество рекомендаций фильмов {}", limit);
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS_LIMIT);
+        }
+        return filmStorage.getRecommendations(userId, size);
+    }
+
+    public List<Film> searchFilms(final String query, final List<String> by, final Integer limit) {
+        if (query == null || query.isBlank()) {
+            log.warn("Запрошен поиск фильмов по пустой строке");
+            throw new ValidationException("Строка поиска не может быть пустой");
+        }
+        boolean byTitle = by == null || by.isEmpty();
+        boolean byDescription = byTitle;
+        if (by != null) {
+            for (String field : by) {
+                if (BY_TITLE.equals(field)) {
+                    byTitle = true;
+                } else if (BY_DESCRIPTION.equals(field)) {
+                    byDescription = true;
+                } else {
+                    log.warn("Запрошен поиск фильмов по неизвестному полю {}", field);
+                    throw new ValidationException("Искать можно только по полям " + BY_TITLE + " и " + BY_DESCRIPTION);
+                }
+            }
+        }
+        int size = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+        if (size <= 0 || size > MAX_SEARCH_LIMIT) {
+            log.warn("Запрошено некорректное количество результатов поиска {}", limit);
+            throw new ValidationException("Количество результатов поиска должно быть от 1 до " + MAX_SEARCH_LIMIT);
+        }
+        return filmStorage.searchFilms(query, byTitle, byDescription, size);
+    }
+
+    private String checkReferences(Film film) {
+        if (film.getMpa().getId() == null) {
+            return "Укажите уникальный идентификатор mpa";
+        }
+        try {
+            mpaStorage.getMPAById(film.getMpa().getId());
+            for (Genre genre : film.getGenres()) {
+                if (genre == null || genre.getId() == null) {
+                    return "Укажите уникальный идентификатор жанра";
+                }
+                genreStorage.getGenreById(genre.getId());
+            }
+        } catch (NotFoundException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private static int validateFilmId(Optional<Integer> id) {
+        if (id.isEmpty()) {
+            log.warn("Попытка получить фильм с пустым уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор фильма не может быть пустым");
+        }
+        Integer filmId = id.get();
+        if (filmId <= 0) {
+            log.warn("Попытка получить фильм с неположительным уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор фильма не может быть отрицательным или равным нулю");
+        }
+        return filmId;
+    }
+
+    private static int validateCursor(Integer after) {
+        if (after == null) {
+            return 0;
+        }
+        if (after < 0) {
+            log.warn("Запрошена страница фильмов с отрицательным курсором {}", after);
+            throw new ValidationException("Курсор страницы не может быть отрицательным");
         }
-        return filmStorage.getFilmsByCount(count);
+        return after;
     }
 }
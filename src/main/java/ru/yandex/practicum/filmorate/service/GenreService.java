@@ -16,6 +16,10 @@ import java.util.Optional;
 public class GenreService {
     private final GenreStorage genreStorage;
 
+    public long getVersion() {
+        return genreStorage.getVersion();
+    }
+
     public List<Genre> getAllGenres() {
         return genreStorage.getAllGenres();
     }
@@ -16,6 +16,10 @@ import java.util.Optional;
 public class MPAService {
     private final MPAStorage mpaStorage;
 
+    public long getVersion() {
+        return mpaStorage.getVersion();
+    }
+
     public List<MPA> getAllMPAs() {
         return mpaStorage.getAllMPAs();
     }
@@ -4,24 +4,59 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.validation.OnCreate;
 
-import java.util.List;
-import java.util.Optional;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_IDS = 1000;
+    private static final int MAX_COMMON_FRIENDS_USERS = 1000;
+    private static final int DEFAULT_RECOMMENDATIONS_LIMIT = 10;
+    private static final int MAX_RECOMMENDATIONS_LIMIT = 100;
+
     private final UserStorage userStorage;
+    private final Validator validator;
 
     public User createUser(User user) {
-        if (user.getName() == null || user.getName().isBlank()) {
-            log.debug("У пользователя с идентификатором {} пустое имя", user.getId());
-            user = user.toBuilder().name(user.getLogin()).build();
-        }
-        return userStorage.addUser(user);
+        return userStorage.addUser(withDefaultName(user));
+    }
+
+    public BatchResult createUsers(List<User> users) {
+        List<User> namedUsers = users == null ? null : users.stream()
+                .map(user -> user == null ? null : withDefaultName(user))
+                .collect(Collectors.toList());
+        Set<String> emails = new HashSet<>();
+        Set<String> logins = new HashSet<>();
+        return BatchProcessor.process(namedUsers,
+                user -> {
+                    String violations = BatchProcessor.violations(validator, user, OnCreate.class, Default.class);
+                    if (violations != null) {
+                        return violations;
+                    }
+                    if (!emails.add(user.getEmail())) {
+                        return "Электронная почта " + user.getEmail() + " повторяется в пакете";
+                    }
+                    if (!logins.add(user.getLogin())) {
+                        return "Логин " + user.getLogin() + " повторяется в пакете";
+                    }
+                    return null;
+                },
+                chunk -> userStorage.addUsers(chunk).stream().map(User::getId).collect(Collectors.toList()),
+                user -> userStorage.addUser(user).getId());
     }
 
     public User updateUser(User user) {
@@ -32,6 +67,27 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
+    public List<User> getUsersPage(Integer after, Integer limit) {
+        int afterId = validateCursor(after);
+        if (limit == null) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            log.warn("Запрошена страница пользователей недопустимого размера {}", limit);
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
+    /**
+     * Проверяет курсор сразу, чтобы ошибка вернулась до начала ответа, а пользователей передаёт получателю уже
+     * при записи ответа.
+     */
+    public Consumer<Consumer<User>> streamUsers(Integer after) {
+        int afterId = validateCursor(after);
+        return action -> userStorage.streamUsers(afterId, action);
+    }
+
     public User getUserById(final Optional<Integer> id) {
         if (id.isEmpty()) {
             log.warn("Попытка получить пользователя с пустым уникальным идентификатором");
@@ -46,6 +102,25 @@ public class UserService {
         return userStorage.getUserById(userId);
     }
 
+    public MultiGetResult<User> getUsersByIds(List<Integer> ids) {
+        if (ids == null || ids.contains(null)) {
+            log.warn("Запрошены пользователей по списку с пустыми идентификаторами");
+            throw new ValidationException("Список идентификаторов пользователей не может быть пустым " +
+                    "или содержать пустые значения");
+        }
+        List<Integer> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.size() > MAX_IDS) {
+            log.warn("Запрошены пользователей сразу по {} идентификаторам", distinctIds.size());
+            throw new ValidationException("За запрос можно получить не более " + MAX_IDS + " пользователей");
+        }
+        List<User> users = userStorage.getUsersByIds(distinctIds);
+        Set<Integer> foundIds = users.stream().map(User::getId).collect(Collectors.toSet());
+        return MultiGetResult.<User>builder()
+                .items(users)
+                .missingIds(distinctIds.stream().filter(id -> !foundIds.contains(id)).collect(Collectors.toList()))
+                .build();
+    }
+
     public boolean addFriend(final Optional<Integer> id, final Optional<Integer> friendIdOptional) {
         if (id.isEmpty()) {
             log.warn("Попытка запроса на дружбу от пользователя с пустым уникальным идентификатором");
@@ -70,6 +145,44 @@ public class UserService {
         return userStorage.addFriend(userId, friendId);
     }
 
+    public BatchResult addFriends(final Optional<Integer> id, final List<Integer> friendIds) {
+        if (id.isEmpty()) {
+            log.warn("Попытка пакетного запроса на дружбу от пользователя с пустым уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть пустым");
+        }
+        Integer userId = id.get();
+        if (userId <= 0) {
+            log.warn("Попытка пакетного запроса на дружбу от пользователя с неположительным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть отрицательным " +
+                    "или равным нулю");
+        }
+        if (!userStorage.findUserById(userId)) {
+            log.warn("Пользователь с идентификатором {} не существует!", userId);
+            throw new NotFoundException("Пользователь с идентификатором " + userId + " не существует!");
+        }
+        Set<Integer> existingIds = friendIds == null ? Set.of() : userStorage.findUserIds(friendIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        return BatchProcessor.process(friendIds,
+                friendId -> {
+                    if (friendId <= 0) {
+                        return "Уникальный идентификатор пользователя не может быть отрицательным или равным нулю";
+                    }
+                    if (!existingIds.contains(friendId)) {
+                        return "Пользователь с идентификатором " + friendId + " не существует!";
+                    }
+                    return null;
+                },
+                chunk -> {
+                    userStorage.addFriends(userId, chunk);
+                    return List.of();
+                },
+                friendId -> {
+                    userStorage.addFriend(userId, friendId);
+                    return null;
+                });
+    }
+
     public boolean deleteFriend(final Optional<Integer> id, final Optional<Integer> friendIdOptional) {
         if (id.isEmpty()) {
             log.warn("Попытка прекратить дружбу от пользователя с пустым уникальным идентификатором");
@@ -132,4 +245,70 @@ public class UserService {
         }
         return userStorage.getMutualFriendsById(userId, otherUserId);
     }
+
+    public Map<Integer, List<User>> getMutualFriendsByIds(final Optional<Integer> id, final List<Integer> otherIds) {
+        if (id.isEmpty()) {
+            log.warn("Попытка получить общих друзей от пользователя с пустым уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть пустым");
+        }
+        Integer userId = id.get();
+        if (userId <= 0) {
+            log.warn("Попытка получить общих друзей от пользователя с неположительным уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть отрицательным " +
+                    "или равным нулю");
+        }
+        if (otherIds.size() > MAX_COMMON_FRIENDS_USERS) {
+            log.warn("Запрошены общие друзья сразу с {} пользователями", otherIds.size());
+            throw new ValidationException("Общих друзей можно получить не более чем с " + MAX_COMMON_FRIENDS_USERS +
+                    " пользователями за запрос");
+        }
+        List<Integer> otherUserIds = otherIds.stream().distinct().collect(Collectors.toList());
+        for (Integer otherUserId : otherUserIds) {
+            if (otherUserId == null || otherUserId <= 0) {
+                log.warn("Попытка получить общих друзей c пользователем, " +
+                        "у которого неположительный уникальный идентификатор");
+                throw new NotFoundException(
+                        "Уникальный идентификатор пользователя не может быть отрицательным или равным нулю");
+            }
+        }
+        return userStorage.getMutualFriendsByIds(userId, otherUserIds);
+    }
+
+    public List<User> getRecommendations(final Optional<Integer> id, final Integer limit) {
+        if (id.isEmpty()) {
+            log.warn("Попытка получить рекомендации для пользователя с пустым уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть пустым");
+        }
+        Integer userId = id.get();
+        if (userId <= 0) {
+            log.warn("Попытка получить рекомендации для пользователя с неположительным уникальным идентификатором");
+            throw new NotFoundException("Уникальный идентификатор пользователя не может быть отрицательным " +
+                    "или равным нулю");
+        }
+        int size = limit == null ? DEFAULT_RECOMMENDATIONS_LIMIT : limit;
+        if (size <= 0 || size > MAX_RECOMMENDATIONS_LIMIT) {
+            log.warn("Запрошено некорректное количество рекомендаций {}", limit);
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS_LIMIT);
+        }
+        return userStorage.getRecommendations(userId, size);
+    }
+
+    private static User withDefaultName(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            log.debug("У пользователя с идентификатором {} пустое имя", user.getId());
+            return user.toBuilder().name(user.getLogin()).build();
+        }
+        return user;
+    }
+
+    private static int validateCursor(Integer after) {
+        if (after == null) {
+            return 0;
+        }
+        if (after < 0) {
+            log.warn("Запрошена страница пользователей с отрицательным курсором {}", after);
+            throw new ValidationException("Курсор страницы не может быть отрицательным");
+        }
+        return after;
+    }
 }
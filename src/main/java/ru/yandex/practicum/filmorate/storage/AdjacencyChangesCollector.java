@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Собирает списки смежности из последовательности добавлений и удалений связей, в которой одна связь может
+ * меняться много раз. Изменения копятся в одном массиве long — владелец в старших битах, связанный
+ * идентификатор в младших, знаковый бит означает удаление, — а при сборке для каждой связи учитывается
+ * только последнее изменение. Идентификаторы должны быть положительными.
+ */
+public class AdjacencyChangesCollector {
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    private long[] changes = new long[16];
+    private int size;
+
+    public void add(int ownerId, int valueId) {
+        append(pair(ownerId, valueId));
+    }
+
+    public void remove(int ownerId, int valueId) {
+        append(pair(ownerId, valueId) | REMOVED);
+    }
+
+    public void addAll(int ownerId, int[] valueIds) {
+        for (int valueId : valueIds) {
+            add(ownerId, valueId);
+        }
+    }
+
+    /**
+     * Забывает все изменения: связи, добавленные до этого вызова, в результат не попадут.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public Map<Integer, int[]> finish() {
+        // Идём с конца: первое встреченное изменение связи — последнее по времени, остальные пропускаются.
+        // Оставленные связи пишутся с конца того же массива, позади ещё не прочитанных изменений.
+        long[] seen = new long[Integer.highestOneBit(Math.max(16, size + size / 2)) << 1];
+        int mask = seen.length - 1;
+        int kept = size;
+        for (int i = size - 1; i >= 0; i--) {
+            long pair = changes[i] & ~REMOVED;
+            long hash = pair * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ hash >>> Integer.SIZE) & mask;
+            while (seen[slot] != 0 && seen[slot] != pair) {
+                slot = (slot + 1) & mask;
+            }
+            if (seen[slot] == 0) {
+                seen[slot] = pair;
+                if (changes[i] >= 0) {
+                    changes[--kept] = pair;
+                }
+            }
+        }
+        Arrays.sort(changes, kept, size);
+        Map<Integer, int[]> lists = new HashMap<>();
+        for (int from = kept; from < size; ) {
+            int ownerId = (int) (changes[from] >>> Integer.SIZE);
+            int to = from;
+            while (to < size && (int) (changes[to] >>> Integer.SIZE) == ownerId) {
+                to++;
+            }
+            int[] values = new int[to - from];
+            for (int i = from; i < to; i++) {
+                values[i - from] = (int) changes[i];
+            }
+            lists.put(ownerId, values);
+            from = to;
+        }
+        changes = new long[16];
+        size = 0;
+        return lists;
+    }
+
+    private void append(long change) {
+        if (size == changes.length) {
+            changes = Arrays.copyOf(changes, size * 2);
+        }
+        changes[size++] = change;
+    }
+
+    private static long pair(int ownerId, int valueId) {
+        return (long) ownerId << Integer.SIZE | (valueId & 0xFFFFFFFFL);
+    }
+}
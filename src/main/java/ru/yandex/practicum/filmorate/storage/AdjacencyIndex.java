@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Списки смежности в памяти: для каждого владельца хранится отсортированный массив связанных идентификаторов
+ * и обратный список владельцев, у которых есть связь с идентификатором.
+ * Массивы не изменяются после публикации, а при добавлении или удалении связи заменяются копией,
+ * поэтому читатели работают без блокировок и всегда видят согласованный список.
+ * Обратный список у популярного идентификатора может быть очень длинным, поэтому он разбит на отсортированные
+ * блоки до {@value #CHUNK_SIZE} элементов: изменение копирует один блок и массив ссылок на блоки, а не весь список.
+ */
+public class AdjacencyIndex {
+    private static final int[] EMPTY = new int[0];
+    private static final int CHUNK_SIZE = 512;
+
+    private final Map<Integer, int[]> forward = new ConcurrentHashMap<>();
+    private final Map<Integer, Chunks> reverse = new ConcurrentHashMap<>();
+
+    public synchronized void rebuild(Map<Integer, int[]> valuesByOwnerId) {
+        forward.clear();
+        reverse.clear();
+        Map<Integer, Integer> reverseCounts = new HashMap<>();
+        valuesByOwnerId.forEach((ownerId, valueIds) -> {
+            int[] sorted = valueIds.clone();
+            Arrays.sort(sorted);
+            forward.put(ownerId, sorted);
+            for (int valueId : sorted) {
+                reverseCounts.merge(valueId, 1, Integer::sum);
+            }
+        });
+        Map<Integer, int[]> owners = new HashMap<>();
+        Map<Integer, Integer> filled = new HashMap<>();
+        reverseCounts.forEach((valueId, count) -> owners.put(valueId, new int[count]));
+        forward.forEach((ownerId, valueIds) -> {
+            for (int valueId : valueIds) {
+                owners.get(valueId)[filled.merge(valueId, 1, Integer::sum) - 1] = ownerId;
+            }
+        });
+        owners.forEach((valueId, ownerIds) -> {
+            Arrays.sort(ownerIds);
+            reverse.put(valueId, Chunks.of(ownerIds));
+        });
+    }
+
+    public void add(int ownerId, int valueId) {
+        insert(forward, ownerId, valueId);
+        reverse.compute(valueId, (id, current) -> current == null ? Chunks.of(new int[]{ownerId})
+                : current.with(ownerId));
+    }
+
+    public void remove(int ownerId, int valueId) {
+        remove(forward, ownerId, valueId);
+        reverse.computeIfPresent(valueId, (id, current) -> current.without(ownerId));
+    }
+
+    public int[] get(int ownerId) {
+        return forward.getOrDefault(ownerId, EMPTY);
+    }
+
+    /**
+     * Владельцы, у которых есть связь с valueId.
+     */
+    public int[] getReverse(int valueId) {
+        return getReverse(valueId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Первые limit владельцев по возрастанию id, у которых есть связь с valueId.
+     */
+    public int[] getReverse(int valueId, int limit) {
+        Chunks owners = reverse.get(valueId);
+        return owners == null ? EMPTY : owners.toArray(limit);
+    }
+
+    /**
+     * Количество владельцев, у которых есть связь с valueId, без копирования списка.
+     */
+    public int countReverse(int valueId) {
+        Chunks owners = reverse.get(valueId);
+        return owners == null ? 0 : owners.size;
+    }
+
+    /**
+     * Передаёт каждого владельца с непустым списком и его список.
+     */
+    public void forEach(BiConsumer<Integer, int[]> action) {
+        forward.forEach(action);
+    }
+
+    public synchronized void clear() {
+        forward.clear();
+        reverse.clear();
+    }
+
+    private static void insert(Map<Integer, int[]> lists, int ownerId, int valueId) {
+        lists.compute(ownerId, (id, current) -> {
+            if (current == null) {
+                return new int[]{valueId};
+            }
+            int position = Arrays.binarySearch(current, valueId);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            int[] updated = new int[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = valueId;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            return updated;
+        });
+    }
+
+    private static void remove(Map<Integer, int[]> lists, int ownerId, int valueId) {
+        lists.computeIfPresent(ownerId, (id, current) -> {
+            int position = Arrays.binarySearch(current, valueId);
+            if (position < 0) {
+                return current;
+            }
+            if (current.length == 1) {
+                return null;
+            }
+            int[] updated = new int[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            System.arraycopy(current, position + 1, updated, position, updated.length - position);
+            return updated;
+        });
+    }
+
+    /**
+     * Отсортированный список, разбитый на блоки. Блоки и массив ссылок на них не изменяются после публикации.
+     */
+    private static final class Chunks {
+        private final int[][] chunks;
+        private final int size;
+
+        private Chunks(int[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        static Chunks of(int[] sorted) {
+            int[][] chunks = new int[(sorted.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = Arrays.copyOfRange(sorted, i * CHUNK_SIZE, Math.min(sorted.length, (i + 1) * CHUNK_SIZE));
+            }
+            return new Chunks(chunks, sorted.length);
+        }
+
+        Chunks with(int id) {
+            int index = chunkOf(id);
+            int[] chunk = chunks[index];
+            int position = Arrays.binarySearch(chunk, id);
+            if (position >= 0) {
+                return this;
+            }
+            int insertAt = -position - 1;
+            int[] updated = new int[chunk.length + 1];
+            System.arraycopy(chunk, 0, updated, 0, insertAt);
+            updated[insertAt] = id;
+            System.arraycopy(chunk, insertAt, updated, insertAt + 1, chunk.length - insertAt);
+            if (updated.length <= CHUNK_SIZE) {
+                int[][] replaced = chunks.clone();
+                replaced[index] = updated;
+                return new Chunks(replaced, size + 1);
+            }
+            // Переполненный блок делится пополам.
+            int[][] split = new int[chunks.length + 1][];
+            System.arraycopy(chunks, 0, split, 0, index);
+            split[index] = Arrays.copyOfRange(updated, 0, updated.length / 2);
+            split[index + 1] = Arrays.copyOfRange(updated, updated.length / 2, updated.length);
+            System.arraycopy(chunks, index + 1, split, index + 2, chunks.length - index - 1);
+            return new Chunks(split, size + 1);
+        }
+
+        // Возвращает null, если удалён последний элемент.
+        Chunks without(int id) {
+            int index = chunkOf(id);
+            int[] chunk = chunks[index];
+            int position = Arrays.binarySearch(chunk, id);
+            if (position < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+            if (chunk.length == 1) {
+                int[][] shrunk = new int[chunks.length - 1][];
+                System.arraycopy(chunks, 0, shrunk, 0, index);
+                System.arraycopy(chunks, index + 1, shrunk, index, shrunk.length - index);
+                return new Chunks(shrunk, size - 1);
+            }
+            int[] updated = new int[chunk.length - 1];
+            System.arraycopy(chunk, 0, updated, 0, position);
+            System.arraycopy(chunk, position + 1, updated, position, updated.length - position);
+            int[][] replaced = chunks.clone();
+            replaced[index] = updated;
+            return new Chunks(replaced, size - 1);
+        }
+
+        int[] toArray(int limit) {
+            int[] result = new int[Math.min(size, limit)];
+            int filled = 0;
+            for (int i = 0; i < chunks.length && filled < result.length; i++) {
+                int length = Math.min(chunks[i].length, result.length - filled);
+                System.arraycopy(chunks[i], 0, result, filled, length);
+                filled += length;
+            }
+            return result;
+        }
+
+        // Последний блок, первый элемент которого не больше id, или первый блок.
+        private int chunkOf(int id) {
+            int low = 1;
+            int high = chunks.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (chunks[middle][0] <= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low - 1;
+        }
+    }
+}
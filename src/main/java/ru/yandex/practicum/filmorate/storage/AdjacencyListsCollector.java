@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Собирает списки смежности из строк, упорядоченных по владельцу, в массивы без промежуточных коллекций.
+ */
+public class AdjacencyListsCollector implements RowCallbackHandler {
+    private final String ownerColumn;
+    private final String valueColumn;
+    private final Map<Integer, int[]> lists = new HashMap<>();
+    private int[] buffer = new int[16];
+    private int size;
+    private int ownerId;
+
+    public AdjacencyListsCollector(String ownerColumn, String valueColumn) {
+        this.ownerColumn = ownerColumn;
+        this.valueColumn = valueColumn;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        int rowOwnerId = rs.getInt(ownerColumn);
+        if (rowOwnerId != ownerId) {
+            flush();
+            ownerId = rowOwnerId;
+        }
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, size * 2);
+        }
+        buffer[size++] = rs.getInt(valueColumn);
+    }
+
+    public Map<Integer, int[]> finish() {
+        flush();
+        return lists;
+    }
+
+    private void flush() {
+        if (size > 0) {
+            lists.put(ownerId, Arrays.copyOf(buffer, size));
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Справочник (MPA, жанры), целиком хранящийся в памяти в виде неизменяемого снимка.
+ * Снимок загружается при старте и заменяется атомарно. Промахи отвечаются по текущему снимку; чтобы подхватить
+ * строки, добавленные в базу в обход приложения, промах перечитывает справочник не чаще раза в
+ * {@code reloadInterval}, и перечитывает его только один из конкурирующих запросов, не блокируя остальные.
+ * {@link #refresh()} перечитывает справочник сразу. Версия справочника меняется, только если перечитанный
+ * справочник отличается от прежнего.
+ */
+@Slf4j
+public class DictionaryCache<T> {
+    private static final Duration DEFAULT_RELOAD_INTERVAL = Duration.ofMinutes(1);
+
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final Function<T, Integer> idExtractor;
+    private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+    private final long reloadIntervalNanos;
+    private final AtomicLong lastReload = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter reloads;
+
+    public DictionaryCache(String name, Supplier<List<T>> loader, Function<T, Integer> idExtractor,
+                           MeterRegistry meterRegistry) {
+        this(name, loader, idExtractor, DEFAULT_RELOAD_INTERVAL, meterRegistry);
+    }
+
+    public DictionaryCache(String name, Supplier<List<T>> loader, Function<T, Integer> idExtractor,
+                           Duration reloadInterval, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.reloadIntervalNanos = reloadInterval.toNanos();
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+        this.hits = Counter.builder("filmorate.dictionary.requests")
+                .tag("dictionary", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("filmorate.dictionary.requests")
+                .tag("dictionary", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.reloads = Counter.builder("filmorate.dictionary.reloads")
+                .tag("dictionary", name)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.dictionary.size", snapshot, ref -> {
+                    Snapshot<T> current = ref.get();
+                    return current == null ? 0 : current.items.size();
+                })
+                .tag("dictionary", name)
+                .register(meterRegistry);
+    }
+
+    public List<T> getAll() {
+        Snapshot<T> current = snapshot.get();
+        if (current == null) {
+            misses.increment();
+            return reload(null).items;
+        }
+        hits.increment();
+        return current.items;
+    }
+
+    /**
+     * Возвращает элемент справочника или null, если его нет в снимке.
+     */
+    public T get(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        Snapshot<T> current = snapshot.get();
+        if (current != null) {
+            T item = current.itemsById.get(id);
+            if (item != null) {
+                hits.increment();
+                return item;
+            }
+        }
+        misses.increment();
+        if (current != null && !reloadDue()) {
+            return null;
+        }
+        return reload(current).itemsById.get(id);
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void refresh() {
+        reload(snapshot.get());
+    }
+
+    // Право на перечитывание по промаху получает только один запрос за интервал.
+    private boolean reloadDue() {
+        long now = System.nanoTime();
+        long last = lastReload.get();
+        return now - last >= reloadIntervalNanos && lastReload.compareAndSet(last, now);
+    }
+
+    private synchronized Snapshot<T> reload(Snapshot<T> stale) {
+        Snapshot<T> current = snapshot.get();
+        if (current != stale) {
+            return current;
+        }
+        Snapshot<T> loaded = new Snapshot<>(loader.get(), idExtractor);
+        snapshot.set(loaded);
+        lastReload.set(System.nanoTime());
+        if (current == null || !current.items.equals(loaded.items)) {
+            version.incrementAndGet();
+        }
+        reloads.increment();
+        log.debug("Справочник {} загружен. Количество элементов: ({})", name, loaded.items.size());
+        return loaded;
+    }
+
+    private static class Snapshot<T> {
+        private final List<T> items;
+        private final Map<Integer, T> itemsById;
+
+        Snapshot(List<T> items, Function<T, Integer> idExtractor) {
+            Map<Integer, T> byId = new LinkedHashMap<>();
+            items.forEach(item -> byId.put(idExtractor.apply(item), item));
+            this.items = List.copyOf(items);
+            this.itemsById = Map.copyOf(byId);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.PriorityQueue;
+
+/**
+ * Счётчик по целочисленным идентификаторам на открытой адресации по примитивным массивам: без упаковки
+ * идентификаторов и без отдельного объекта на каждый ключ. Исключённые идентификаторы хранятся в той же таблице
+ * с отрицательным счётчиком, чтобы отсеивать их той же единственной пробой.
+ */
+public class IntCounter {
+    private int[] ids;
+    private int[] counts;
+    private int size;
+
+    public IntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        ids = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Исключает идентификатор: его счётчик больше не растёт и он не попадает в {@link #top(int)}.
+     */
+    public void exclude(int id) {
+        int slot = find(id);
+        if (counts[slot] == 0) {
+            put(slot, id, -1);
+        } else {
+            counts[slot] = -1;
+        }
+    }
+
+    public void increment(int id) {
+        add(id, 1);
+    }
+
+    /**
+     * Увеличивает счётчик на положительное значение delta, если идентификатор не исключён.
+     */
+    public void add(int id, int delta) {
+        int slot = find(id);
+        if (counts[slot] == 0) {
+            put(slot, id, delta);
+        } else if (counts[slot] > 0) {
+            counts[slot] += delta;
+        }
+    }
+
+    public int get(int id) {
+        return Math.max(counts[find(id)], 0);
+    }
+
+    /**
+     * Прибавляет счётчики другого счётчика; исключения другого счётчика не переносятся.
+     */
+    public void addAll(IntCounter other) {
+        for (int slot = 0; slot < other.ids.length; slot++) {
+            if (other.counts[slot] > 0) {
+                add(other.ids[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Первые limit идентификаторов по убыванию счётчика, при равенстве — по возрастанию идентификатора.
+     */
+    public int[] top(int limit) {
+        PriorityQueue<Long> heap = new PriorityQueue<>(limit + 1);
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (counts[slot] > 0) {
+                long rank = rank(ids[slot], counts[slot]);
+                if (heap.size() < limit) {
+                    heap.add(rank);
+                } else if (rank > heap.peek()) {
+                    heap.poll();
+                    heap.add(rank);
+                }
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = (int) ~heap.poll().longValue();
+        }
+        return result;
+    }
+
+    private int find(int id) {
+        int mask = ids.length - 1;
+        int slot = mix(id) & mask;
+        while (counts[slot] != 0 && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void put(int slot, int id, int count) {
+        ids[slot] = id;
+        counts[slot] = count;
+        if (++size * 2 > ids.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int[] oldIds = ids;
+        int[] oldCounts = counts;
+        ids = new int[oldIds.length * 2];
+        counts = new int[oldCounts.length * 2];
+        int mask = ids.length - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = mix(oldIds[i]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Больший ключ — лучший кандидат: сначала значение счётчика, затем меньший идентификатор.
+    private static long rank(int id, int count) {
+        return ((long) count << Integer.SIZE) | (~id & 0xFFFFFFFFL);
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
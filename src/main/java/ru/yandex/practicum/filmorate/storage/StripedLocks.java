@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Фиксированный набор мониторов, между которыми распределяются идентификаторы. Операции над одним
+ * идентификатором всегда берут один и тот же монитор, а операции над разными идентификаторами
+ * почти никогда не ждут друг друга, при этом память не растёт с количеством записей.
+ */
+public class StripedLocks {
+    private final Object[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new Object();
+        }
+        mask = size - 1;
+    }
+
+    public Object get(int id) {
+        return locks[id & mask];
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии коллекции и её элементов для условных запросов. Любое изменение увеличивает версию коллекции,
+ * а изменение элемента ещё и запоминается как его версия; элементы, не менявшиеся с запуска приложения
+ * или с последней очистки, имеют версию этой очистки. Версию нужно увеличивать после того, как изменение
+ * стало видно читателям: тогда ответ со старой версией может содержать только более новые данные, но не наоборот.
+ */
+public class VersionCounter {
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private volatile long cleared;
+
+    public long get() {
+        return version.get();
+    }
+
+    public long get(int id) {
+        return Math.max(cleared, versions.getOrDefault(id, 0L));
+    }
+
+    /**
+     * Изменилась коллекция в целом, но не её элементы (например, лайки, от которых зависит рейтинг).
+     */
+    public void changed() {
+        version.incrementAndGet();
+    }
+
+    public void changed(int id) {
+        long changed = version.incrementAndGet();
+        versions.merge(id, changed, Math::max);
+    }
+
+    /**
+     * Изменились все элементы сразу, например после очистки хранилища.
+     */
+    public void changedAll() {
+        // Сначала забываем версии элементов, потом поднимаем общую: элемент, изменённый между этими шагами,
+        // получит версию не меньше прежней.
+        versions.clear();
+        cleared = version.incrementAndGet();
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.VersionCounter;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш фильмов по идентификатору поверх основного хранилища.
+ * Любое изменение фильма (включая его жанры) удаляет его из кэша после записи в хранилище.
+ * Основное хранилище поднимает версию фильма раньше, чем фильм удаляется из кэша, поэтому удаление из кэша
+ * поднимает ещё и собственную версию: версия фильма — их сумма, и она меняется уже после удаления.
+ */
+@Slf4j
+@Repository
+@Profile("!in-memory")
+@Primary
+@Qualifier("CachingFilmStorage")
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final LoadingCache<Integer, Film> films;
+    private final VersionCounter invalidations = new VersionCounter();
+
+    public CachingFilmStorage(@Qualifier("FilmDBStorage") FilmStorage filmStorage,
+                              @Value("${filmorate.cache.films.maximum-size}") long maximumSize,
+                              @Value("${filmorate.cache.films.expire-after-write}") Duration expireAfterWrite,
+                              MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        this.films = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(filmStorage::getFilmById);
+        CaffeineCacheMetrics.monitor(meterRegistry, films, "films");
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return filmStorage.addFilm(film);
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        return filmStorage.addFilms(films);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        try {
+            return filmStorage.updateFilm(film);
+        } finally {
+            films.invalidate(film.getId());
+            invalidations.changed(film.getId());
+        }
+    }
+
+    @Override
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Override
+    public List<Film> getFilmsPage(Integer afterId, Integer limit) {
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    @Override
+    public void streamFilms(Integer afterId, Consumer<Film> action) {
+        filmStorage.streamFilms(afterId, action);
+    }
+
+    @Override
+    public Film getFilmById(Integer id) {
+        return films.get(id);
+    }
+
+    /**
+     * Фильмы из кэша берутся как есть, остальные загружаются из основного хранилища одним запросом и в кэш
+     * не попадают: загрузка, завершившаяся после обновления, вернула бы в кэш устаревшие данные.
+     */
+    @Override
+    public List<Film> getFilmsByIds(List<Integer> ids) {
+        Map<Integer, Film> found = new HashMap<>(films.getAllPresent(ids));
+        List<Integer> missing = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        filmStorage.getFilmsByIds(missing).forEach(film -> found.put(film.getId(), film));
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteStorage() {
+        try {
+            filmStorage.deleteStorage();
+        } finally {
+            films.invalidateAll();
+            invalidations.changedAll();
+        }
+        log.debug("Кэш фильмов очищен");
+    }
+
+    @Override
+    public boolean addLike(Integer filmId, Integer userId) {
+        return filmStorage.addLike(filmId, userId);
+    }
+
+    @Override
+    public int addLikes(List<Like> likes) {
+        return filmStorage.addLikes(likes);
+    }
+
+    @Override
+    public boolean deleteLike(Integer filmId, Integer userId) {
+        return filmStorage.deleteLike(filmId, userId);
+    }
+
+    @Override
+    public List<Film> getFilmsByCount(Integer count, Integer genreId, Integer mpaId, Integer year) {
+        return filmStorage.getFilmsByCount(count, genreId, mpaId, year);
+    }
+
+    @Override
+    public List<Film> getRecommendations(Integer userId, Integer limit) {
+        return filmStorage.getRecommendations(userId, limit);
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, Integer limit) {
+        return filmStorage.searchFilms(query, byTitle, byDescription, limit);
+    }
+
+    @Override
+    public Set<Integer> findFilmIds(Collection<Integer> ids) {
+        return filmStorage.findFilmIds(ids);
+    }
+
+    @Override
+    public long getVersion() {
+        return filmStorage.getVersion();
+    }
+
+    @Override
+    public long getFilmVersion(Integer id) {
+        return filmStorage.getFilmVersion(id) + invalidations.get(id);
+    }
+}
@@ -3,167 +3,728 @@ package ru.yandex.practicum.filmorate.storage.film;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.AdjacencyListsCollector;
+import ru.yandex.practicum.filmorate.storage.VersionCounter;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MPAStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
 @Repository
-@Primary
+@Profile("!in-memory")
 @Qualifier("FilmDBStorage")
 public class FilmDBStorage implements FilmStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String SELECT_FILMS = "SELECT f.id, f.name, f.description, f.release_date, f.duration, " +
+            "f.mpa_id " +
+            "FROM films AS f ";
+    private static final String SELECT_FILM_BY_ID = SELECT_FILMS +
+            "WHERE f.id = ?";
+    private static final String SELECT_FILMS_BY_IDS = SELECT_FILMS +
+            "WHERE f.id = ANY(?)";
+    private static final String SELECT_FILMS_PAGE = SELECT_FILMS +
+            "WHERE f.id > ? " +
+            "ORDER BY f.id " +
+            "LIMIT ?";
+    private static final String SELECT_FILMS_WITH_GENRES = "SELECT f.id, f.name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, fg.genre_id " +
+            "FROM films AS f " +
+            "LEFT JOIN film_genre AS fg ON f.id = fg.film_id " +
+            "WHERE f.id > ? " +
+            "ORDER BY f.id, fg.genre_id";
+    private static final String EXISTS_FILM = "SELECT id FROM films WHERE id = ?";
+    private static final String SELECT_FILM_IDS = "SELECT id FROM films WHERE id = ANY(?)";
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, mpa_id) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_FILM = "UPDATE films " +
+            "SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? " +
+            "WHERE id = ?";
+    private static final String DELETE_FILMS = "DELETE FROM films";
+    private static final String INSERT_LIKE = "INSERT INTO likes (film_id, user_id) " +
+            "SELECT id, ? FROM films " +
+            "WHERE id = ? AND NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String DELETE_LIKE = "DELETE FROM likes " +
+            "WHERE film_id = ? AND user_id = ?";
+    private static final String UPDATE_LIKE_COUNT = "UPDATE films SET like_count = like_count + ? WHERE id = ?";
+    private static final String DELETE_LIKES = "DELETE FROM likes";
+    private static final String RESET_LIKE_COUNTS = "UPDATE films SET like_count = 0 WHERE like_count <> 0";
+    private static final String SELECT_LIKE_COUNTS = "SELECT id, like_count, mpa_id, release_date FROM films";
+    private static final String SELECT_FILM_GENRES = "SELECT film_id, genre_id " +
+            "FROM film_genre " +
+            "ORDER BY film_id";
+    private static final String SELECT_LIKES = "SELECT user_id, film_id " +
+            "FROM likes " +
+            "ORDER BY user_id";
+    private static final String SELECT_SEARCH_TEXTS = "SELECT id, name, description FROM films ORDER BY id";
+
     private final JdbcTemplate jdbcTemplate;
     private final GenreStorage genreStorage;
+    private final MPAStorage mpaStorage;
     private final UserStorage userStorage;
-    private String sql;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final LikeIndex likeIndex;
+    private final FilmRecommender filmRecommender;
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikeWriteQueue likeWriteQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final VersionCounter versions = new VersionCounter();
+
+    @PostConstruct
+    public void loadIndexes() {
+        loadPopularFilms();
+        loadLikes();
+        loadSearchIndex();
+        likeWriteQueue.start(this::writeQueuedLikes);
+    }
+
+    /**
+     * Дописывает в базу лайки из очереди отложенной записи до закрытия пула соединений.
+     */
+    @PreDestroy
+    public void flushLikes() {
+        likeWriteQueue.stop();
+    }
+
+    private void loadPopularFilms() {
+        AdjacencyListsCollector collector = new AdjacencyListsCollector("film_id", "genre_id");
+        jdbcTemplate.query(SELECT_FILM_GENRES, collector);
+        Map<Integer, int[]> genresByFilmId = collector.finish();
+        Map<Integer, Integer> likes = new HashMap<>();
+        Map<Integer, Integer> mpaIds = new HashMap<>();
+        Map<Integer, Integer> years = new HashMap<>();
+        jdbcTemplate.query(SELECT_LIKE_COUNTS, rs -> {
+            int id = rs.getInt("id");
+            likes.put(id, rs.getInt("like_count"));
+            int mpaId = rs.getInt("mpa_id");
+            if (!rs.wasNull()) {
+                mpaIds.put(id, mpaId);
+            }
+            LocalDate releaseDate = rs.getObject("release_date", LocalDate.class);
+            if (releaseDate != null) {
+                years.put(id, releaseDate.getYear());
+            }
+        });
+        popularFilmsIndex.rebuild(likes);
+        likes.keySet().forEach(id -> popularFilmsIndex.setCategories(id,
+                Arrays.stream(genresByFilmId.getOrDefault(id, new int[0])).boxed().collect(Collectors.toList()),
+                mpaIds.get(id), years.get(id)));
+        log.debug("Рейтинг популярных фильмов построен. Фильмов в рейтинге: ({})", likes.size());
+    }
+
+    private void loadLikes() {
+        AdjacencyListsCollector collector = new AdjacencyListsCollector("user_id", "film_id");
+        jdbcTemplate.query(SELECT_LIKES, collector);
+        Map<Integer, int[]> filmsByUserId = collector.finish();
+        likeIndex.rebuild(filmsByUserId);
+        log.debug("Индекс лайков построен. Пользователей с лайками: ({})", filmsByUserId.size());
+    }
+
+    private void loadSearchIndex() {
+        FilmSearchIndex.Loader loader = filmSearchIndex.loader();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_SEARCH_TEXTS);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            loader.add(rs.getInt("id"), rs.getString("name"), rs.getString("description"));
+        });
+        loader.finish();
+    }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
-        SimpleJdbcInsert insert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("films")
-                .usingGeneratedKeyColumns("id");
-        int id = insert.executeAndReturnKey(filmToMap(film)).intValue();
-        if (!film.getGenres().isEmpty()) {
-            log.debug("Обновление жанров");
-            genreStorage.updateFilmGenres(id, new HashSet<>(film.getGenres()));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_FILM, new String[]{"id"});
+            ps.setString(1, film.getName());
+            ps.setString(2, film.getDescription());
+            ps.setObject(3, film.getReleaseDate());
+            ps.setObject(4, film.getDuration());
+            ps.setInt(5, film.getMpa().getId());
+            return ps;
+        }, keyHolder);
+        int id = Objects.requireNonNull(keyHolder.getKey()).intValue();
+        afterCommit(() -> {
+            setCategories(id, film);
+            filmSearchIndex.index(id, film.getName(), film.getDescription());
+            versions.changed(id);
+        });
+        if (film.getGenres().isEmpty()) {
+            return film.toBuilder().id(id).build();
+        }
+        log.debug("Обновление жанров");
+        return film.toBuilder().id(id).genres(genreStorage.updateFilmGenres(id, film.getGenres())).build();
+    }
+
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        List<Integer> ids = jdbcTemplate.execute((ConnectionCallback<List<Integer>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_FILM, new String[]{"id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setObject(3, film.getReleaseDate());
+                    ps.setObject(4, film.getDuration());
+                    ps.setInt(5, film.getMpa().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Integer> generatedIds = new ArrayList<>(films.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generatedIds.add(keys.getInt(1));
+                    }
+                }
+                return generatedIds;
+            }
+        });
+        List<Film> created = new ArrayList<>(films.size());
+        Map<Integer, Set<Genre>> genres = new HashMap<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i).toBuilder().id(ids.get(i)).build();
+            if (!film.getGenres().isEmpty()) {
+                genres.put(film.getId(), new HashSet<>(film.getGenres()));
+            }
+            created.add(film);
         }
-        return film.toBuilder().id(id).build();
+        genreStorage.createFilmGenres(genres);
+        afterCommit(() -> {
+            created.forEach(film -> {
+                setCategories(film.getId(), film);
+                versions.changed(film.getId());
+            });
+            filmSearchIndex.indexAll(created);
+        });
+        log.debug("Пакетно добавлено фильмов: ({})", created.size());
+        return created;
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
-        if (!findFilmById(film.getId())) {
+        if (jdbcTemplate.update(UPDATE_FILM, film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getMpa().getId(), film.getId()) == 0) {
             log.warn("Фильм с идентификатором {} не существует!", film.getId());
             throw new NotFoundException("Фильм с идентификатором " + film.getId() + " не существует!");
         }
-        sql = "UPDATE films " +
-                "SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? " +
-                "WHERE id = ?";
-        jdbcTemplate.update(sql, film.getName(), film.getDescription(), film.getReleaseDate(),
-                film.getDuration(), film.getMpa().getId(), film.getId());
-        if (!film.getGenres().isEmpty()) {
-            genreStorage.updateFilmGenres(film.getId(), new HashSet<>(film.getGenres()));
-            return film.toBuilder().genres(new ArrayList<>(new HashSet<>(film.getGenres()))
-                    .stream().sorted(Comparator.comparing(Genre::getId)).collect(Collectors.toList())).build();
-        }
-        genreStorage.deleteFilmGenres(film.getId());
-        return film;
+        afterCommit(() -> {
+            setCategories(film.getId(), film);
+            filmSearchIndex.index(film.getId(), film.getName(), film.getDescription());
+            versions.changed(film.getId());
+        });
+        return film.toBuilder().genres(genreStorage.updateFilmGenres(film.getId(), film.getGenres())).build();
     }
 
     @Override
     public List<Film> getAllFilms() {
-        sql = "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name " +
-                "FROM films AS f " +
-                "LEFT JOIN mpa AS m ON f.mpa_id = m.id";
-        return jdbcTemplate.query(sql, getFilmMapper());
+        return withGenres(jdbcTemplate.query(SELECT_FILMS, getFilmMapper()));
+    }
+
+    @Override
+    public List<Film> getFilmsPage(Integer afterId, Integer limit) {
+        return withGenres(jdbcTemplate.query(SELECT_FILMS_PAGE, getFilmMapper(), afterId, limit));
+    }
+
+    @Override
+    public void streamFilms(Integer afterId, Consumer<Film> action) {
+        FilmRowAggregator aggregator = new FilmRowAggregator(getFilmMapper(), genreStorage, action);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_FILMS_WITH_GENRES);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setInt(1, afterId);
+            return ps;
+        }, aggregator);
+        aggregator.finish();
     }
 
     @Override
     public Film getFilmById(Integer id) {
-        if (!findFilmById(id)) {
+        try {
+            return withGenres(List.of(jdbcTemplate.queryForObject(SELECT_FILM_BY_ID, getFilmMapper(), id))).get(0);
+        } catch (EmptyResultDataAccessException e) {
             log.warn("Фильм с идентификатором {} не существует!", id);
             throw new NotFoundException("Фильм с идентификатором " + id + " не существует!");
         }
-        sql = "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name " +
-                "FROM films AS f " +
-                "LEFT JOIN mpa AS m ON f.mpa_id = m.id " +
-                "WHERE f.id = ?";
-        return jdbcTemplate.queryForObject(sql, getFilmMapper(), id);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Film> films = jdbcTemplate.query(SELECT_FILMS_BY_IDS,
+                        ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", ids.toArray())),
+                        getFilmMapper())
+                .stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return withGenres(ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
     }
 
     @Override
     public void deleteStorage() {
-        sql = "DELETE FROM films";
-        jdbcTemplate.update(sql);
+        likeWriteQueue.clear();
+        jdbcTemplate.update(DELETE_FILMS);
+        popularFilmsIndex.clear();
+        likeIndex.clear();
+        filmSearchIndex.clear();
+        versions.changedAll();
     }
 
+    /**
+     * Удаляет все лайки, включая ещё не записанные, и обнуляет счётчики лайков фильмов. Нужно при очистке
+     * хранилища пользователей: каскадное удаление лайков вместе с пользователями счётчики и индексы не меняет.
+     */
+    public void deleteLikes() {
+        likeWriteQueue.clear();
+        jdbcTemplate.update(DELETE_LIKES);
+        jdbcTemplate.update(RESET_LIKE_COUNTS);
+        afterCommit(() -> {
+            likeIndex.clear();
+            popularFilmsIndex.clearLikes();
+            versions.changed();
+        });
+    }
+
+    /**
+     * При отложенной записи лайк только ставится в очередь, поэтому транзакция открывается лишь при записи в базу.
+     */
     @Override
     public boolean addLike(Integer filmId, Integer userId) {
-        if (!findFilmById(filmId)) {
-            log.warn("Попытка получить фильм с несуществующим идентификатором id = {}", filmId);
-            throw new NotFoundException("Фильм с идентификатором id = " + filmId + " не существует");
+        if (likeWriteQueue.isEnabled()) {
+            submitLike(filmId, userId, true);
+            return true;
         }
-        if (!userStorage.findUserById(userId)) {
-            log.warn("Попытка получить пользователя с несуществующим идентификатором id = {}", userId);
-            throw new NotFoundException("Пользователь с идентификатором id = " + userId + " не существует");
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> insertLike(filmId, userId)));
+    }
+
+    private boolean insertLike(Integer filmId, Integer userId) {
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(INSERT_LIKE, userId, filmId, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            log.debug("Лайк фильму с id = {} от пользователя с id = {} уже добавлен параллельным запросом",
+                    filmId, userId);
+            inserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            // Внешний ключ не говорит, чего именно нет, поэтому уточняем только при ошибке.
+            requireFilmAndUser(filmId, userId);
+            throw e;
+        }
+        if (inserted > 0) {
+            changeLikes(filmId, 1);
+            afterCommit(() -> likeIndex.addLike(filmId, userId));
+        } else if (!findFilmById(filmId)) {
+            throw likeFilmNotFound(filmId);
+        }
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public int addLikes(List<Like> likes) {
+        int[] inserted = insertLikes(likes);
+        requireLikedFilms(likes, inserted);
+        Map<Integer, Integer> deltas = new HashMap<>();
+        List<Like> added = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                deltas.merge(likes.get(i).getFilmId(), inserted[i], Integer::sum);
+                added.add(likes.get(i));
+            }
         }
-        sql = "MERGE INTO likes (film_id, user_id) " +
-                "KEY (film_id, user_id) " +
-                "VALUES (?, ?)";
-        return jdbcTemplate.update(sql, filmId, userId) > 0;
+        updateLikeCounts(deltas);
+        afterCommit(() -> {
+            deltas.forEach(popularFilmsIndex::changeLikes);
+            added.forEach(like -> likeIndex.addLike(like.getFilmId(), like.getUserId()));
+            versions.changed();
+        });
+        log.debug("Пакетно добавлено лайков: ({})", added.size());
+        return added.size();
     }
 
     @Override
     public boolean deleteLike(Integer filmId, Integer userId) {
-        if (!findFilmById(filmId)) {
-            log.warn("Попытка получить фильм с несуществующим идентификатором id = {}", filmId);
-            throw new NotFoundException("Фильм с идентификатором id = " + filmId + " не существует");
+        if (likeWriteQueue.isEnabled()) {
+            return submitLike(filmId, userId, false);
         }
-        if (!userStorage.findUserById(userId)) {
-            log.warn("Попытка получить пользователя с несуществующим идентификатором id = {}", userId);
-            throw new NotFoundException("Пользователь с идентификатором id = " + userId + " не существует");
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> removeLike(filmId, userId)));
+    }
+
+    private boolean removeLike(Integer filmId, Integer userId) {
+        if (jdbcTemplate.update(DELETE_LIKE, filmId, userId) == 0) {
+            requireFilmAndUser(filmId, userId);
+            return false;
         }
-        sql = "DELETE FROM likes " +
-                "WHERE film_id = ? AND user_id = ?";
-        return jdbcTemplate.update(sql, filmId, userId) > 0;
+        changeLikes(filmId, -1);
+        afterCommit(() -> likeIndex.removeLike(filmId, userId));
+        return true;
+    }
+
+    @Override
+    public List<Film> getFilmsByCount(Integer count, Integer genreId, Integer mpaId, Integer year) {
+        return getFilmsByIds(popularFilmsIndex.getTop(count, genreId, mpaId, year));
+    }
+
+    @Override
+    public List<Film> getRecommendations(Integer userId, Integer limit) {
+        int[] recommendedIds = filmRecommender.recommend(userId, limit);
+        if (recommendedIds.length == 0 && !userStorage.findUserById(userId)) {
+            throw likeUserNotFound(userId);
+        }
+        return getFilmsByIds(Arrays.stream(recommendedIds).boxed().collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, Integer limit) {
+        int[] foundIds = filmSearchIndex.search(query, byTitle, byDescription, limit);
+        return getFilmsByIds(Arrays.stream(foundIds).boxed().collect(Collectors.toList()));
+    }
+
+    @Override
+    public Set<Integer> findFilmIds(Collection<Integer> ids) {
+        Set<Integer> found = new HashSet<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        jdbcTemplate.query(SELECT_FILM_IDS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", ids.toArray())),
+                rs -> {
+                    found.add(rs.getInt("id"));
+                });
+        return found;
+    }
+
+    @Override
+    public long getVersion() {
+        return versions.get();
     }
 
     @Override
-    public List<Film> getFilmsByCount(Integer count) {
-        sql = "SELECT f.id, f.name, f.description, f.release_date, f.duration, f.mpa_id, m.name, " +
-                "COUNT(l.user_id) AS amount_of_likes " +
-                "FROM films AS f " +
-                "LEFT JOIN likes AS l ON f.id = l.film_id " +
-                "LEFT JOIN mpa AS m ON f.mpa_id = m.id " +
-                "GROUP BY f.name " +
-                "ORDER BY amount_of_likes DESC " +
-                "LIMIT ?";
-        return jdbcTemplate.query(sql, getFilmMapper(), count);
+    public long getFilmVersion(Integer id) {
+        // Рейтинг популярных фильмов содержит все фильмы, поэтому существование проверяется без запроса к базе.
+        if (!popularFilmsIndex.contains(id)) {
+            log.warn("Фильм с идентификатором {} не существует!", id);
+            throw new NotFoundException("Фильм с идентификатором " + id + " не существует!");
+        }
+        return versions.get(id);
+    }
+
+    /**
+     * Ставит изменение лайка в очередь отложенной записи и сразу применяет его к рейтингу популярных фильмов,
+     * чтобы рейтинг учитывал ещё не записанные лайки. Возвращает, стоял ли лайк до изменения.
+     */
+    private boolean submitLike(Integer filmId, Integer userId, boolean liked) {
+        if (!popularFilmsIndex.contains(filmId)) {
+            throw likeFilmNotFound(filmId);
+        }
+        try {
+            userStorage.getUserById(userId);
+        } catch (NotFoundException e) {
+            throw likeUserNotFound(userId);
+        }
+        boolean previous = likeWriteQueue.submit(filmId, userId, liked, () -> likeIndex.hasLike(filmId, userId));
+        if (previous != liked) {
+            popularFilmsIndex.changeLikes(filmId, liked ? 1 : -1);
+            versions.changed();
+        }
+        return previous;
     }
 
+    /**
+     * Записывает пакет из очереди отложенной записи в одной транзакции. Если пакет не записывается из-за
+     * нарушения целостности, изменения пишутся по одному, а не записанные отбрасываются.
+     */
+    private void writeQueuedLikes(Map<Long, Boolean> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeLikes(batch));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Пакет лайков не записан целиком, запись по одному: {}", e.getMessage());
+            batch.forEach((key, liked) -> {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> writeLikes(Map.of(key, liked)));
+                } catch (DataIntegrityViolationException ex) {
+                    log.warn("Лайк фильму с id = {} от пользователя с id = {} не записан: {}",
+                            LikeWriteQueue.filmId(key), LikeWriteQueue.userId(key), ex.getMessage());
+                    revertQueuedLike(LikeWriteQueue.filmId(key), liked);
+                }
+            });
+        }
+    }
+
+    private void writeLikes(Map<Long, Boolean> batch) {
+        List<Like> added = new ArrayList<>();
+        List<Like> deleted = new ArrayList<>();
+        batch.forEach((key, liked) -> (liked ? added : deleted).add(Like.builder()
+                .filmId(LikeWriteQueue.filmId(key))
+                .userId(LikeWriteQueue.userId(key))
+                .build()));
+        int[] inserted = insertLikes(added);
+        int[] removed = batchLikes(DELETE_LIKE, deleted, (ps, like) -> {
+            ps.setInt(1, like.getFilmId());
+            ps.setInt(2, like.getUserId());
+        });
+        Map<Integer, Integer> deltas = new HashMap<>();
+        Map<Integer, Integer> reverts = new HashMap<>();
+        collectChanges(added, inserted, 1, deltas, reverts);
+        collectChanges(deleted, removed, -1, deltas, reverts);
+        updateLikeCounts(deltas);
+        afterCommit(() -> {
+            for (int i = 0; i < added.size(); i++) {
+                if (inserted[i] > 0) {
+                    likeIndex.addLike(added.get(i).getFilmId(), added.get(i).getUserId());
+                }
+            }
+            for (int i = 0; i < deleted.size(); i++) {
+                if (removed[i] > 0) {
+                    likeIndex.removeLike(deleted.get(i).getFilmId(), deleted.get(i).getUserId());
+                }
+            }
+            // Рейтинг уже учёл эти изменения при постановке в очередь, но база их не приняла: фильм удалён.
+            reverts.forEach((filmId, delta) -> {
+                if (popularFilmsIndex.contains(filmId)) {
+                    popularFilmsIndex.changeLikes(filmId, delta);
+                }
+            });
+            if (!reverts.isEmpty()) {
+                versions.changed();
+            }
+        });
+        log.debug("Записано изменений лайков из очереди: ({})", batch.size());
+    }
+
+    private static void collectChanges(List<Like> likes, int[] changed, int delta,
+                                       Map<Integer, Integer> deltas, Map<Integer, Integer> reverts) {
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i] > 0) {
+                deltas.merge(likes.get(i).getFilmId(), delta, Integer::sum);
+            } else {
+                reverts.merge(likes.get(i).getFilmId(), -delta, Integer::sum);
+            }
+        }
+    }
+
+    private void revertQueuedLike(int filmId, boolean liked) {
+        if (popularFilmsIndex.contains(filmId)) {
+            popularFilmsIndex.changeLikes(filmId, liked ? -1 : 1);
+            versions.changed();
+        }
+    }
+
+    private int[] insertLikes(List<Like> likes) {
+        return batchLikes(INSERT_LIKE, likes, (ps, like) -> {
+            ps.setInt(1, like.getUserId());
+            ps.setInt(2, like.getFilmId());
+            ps.setInt(3, like.getFilmId());
+            ps.setInt(4, like.getUserId());
+        });
+    }
+
+    private int[] batchLikes(String sql, List<Like> likes, ParameterizedPreparedStatementSetter<Like> setter) {
+        if (likes.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setter.setValues(ps, likes.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return likes.size();
+            }
+        });
+    }
+
+    private void updateLikeCounts(Map<Integer, Integer> deltas) {
+        List<Map.Entry<Integer, Integer>> changes = new ArrayList<>(deltas.entrySet());
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_LIKE_COUNT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, changes.get(i).getValue());
+                ps.setInt(2, changes.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return changes.size();
+            }
+        });
+    }
 
     private boolean findFilmById(Integer id) {
-        sql = "SELECT id FROM films WHERE id = ?";
-        SqlRowSet filmRaws = jdbcTemplate.queryForRowSet(sql, id);
+        SqlRowSet filmRaws = jdbcTemplate.queryForRowSet(EXISTS_FILM, id);
         return filmRaws.next();
     }
 
+    // Лайк несуществующему фильму не вставляется без ошибки, как и повторный, поэтому фильмы таких строк
+    // проверяются отдельно: пакет с несуществующим фильмом отклоняется так же, как с несуществующим пользователем.
+    private void requireLikedFilms(List<Like> likes, int[] inserted) {
+        Set<Integer> filmIds = new HashSet<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] == 0) {
+                filmIds.add(likes.get(i).getFilmId());
+            }
+        }
+        filmIds.removeAll(findFilmIds(filmIds));
+        if (!filmIds.isEmpty()) {
+            Integer filmId = filmIds.iterator().next();
+            log.warn("Пакет лайков отклонён: фильм с идентификатором id = {} не существует", filmId);
+            throw new DataIntegrityViolationException("Фильм с идентификатором id = " + filmId + " не существует");
+        }
+    }
+
+    private void requireFilmAndUser(Integer filmId, Integer userId) {
+        if (!findFilmById(filmId)) {
+            throw likeFilmNotFound(filmId);
+        }
+        if (!userStorage.findUserById(userId)) {
+            throw likeUserNotFound(userId);
+        }
+    }
+
+    private static NotFoundException likeFilmNotFound(Integer filmId) {
+        log.warn("Попытка получить фильм с несуществующим идентификатором id = {}", filmId);
+        return new NotFoundException("Фильм с идентификатором id = " + filmId + " не существует");
+    }
+
+    private static NotFoundException likeUserNotFound(Integer userId) {
+        log.warn("Попытка получить пользователя с несуществующим идентификатором id = {}", userId);
+        return new NotFoundException("Пользователь с идентификатором id = " + userId + " не существует");
+    }
+
+    private void setCategories(int filmId, Film film) {
+        popularFilmsIndex.setCategories(filmId,
+                film.getGenres().stream().filter(Objects::nonNull).map(Genre::getId).collect(Collectors.toList()),
+                film.getMpa() == null ? null : film.getMpa().getId(),
+                film.getReleaseDate() == null ? null : film.getReleaseDate().getYear());
+    }
+
+    private void changeLikes(Integer filmId, int delta) {
+        jdbcTemplate.update(UPDATE_LIKE_COUNT, delta, filmId);
+        afterCommit(() -> {
+            popularFilmsIndex.changeLikes(filmId, delta);
+            versions.changed();
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private List<Film> withGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, List<Genre>> genres = genreStorage.getGenresByFilmIds(
+                films.stream().map(Film::getId).collect(Collectors.toList()));
+        return films.stream()
+                .map(film -> film.toBuilder()
+                        .genres(genres.getOrDefault(film.getId(), new ArrayList<>()))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
     private RowMapper<Film> getFilmMapper() {
         return (rs, rowNum) -> {
-            Film film = Film.builder()
+            int mpaId = rs.getInt("mpa_id");
+            return Film.builder()
                     .id(rs.getInt("id"))
                     .name(rs.getString("name"))
                     .description(rs.getString("description"))
                     .releaseDate(rs.getDate("release_date").toLocalDate())
                     .duration(rs.getInt("duration"))
-                    .mpa(MPA.builder().id(rs.getInt("films.mpa_id"))
-                            .name(rs.getString("mpa.name")).build())
+                    .mpa(rs.wasNull() ? null : mpaStorage.getMPAById(mpaId))
                     .build();
-            List<Genre> genres = genreStorage.getGenresByFilmId(film.getId())
-                    .stream().sorted(Comparator.comparing(Genre::getId)).collect(Collectors.toList());
-            return film.toBuilder().genres(genres).build();
         };
     }
 
-    private static Map<String, Object> filmToMap(Film film) {
-        return Map.of(
-                "name", film.getName(),
-                "description", film.getDescription(),
-                "release_date", film.getReleaseDate(),
-                "duration", film.getDuration(),
-                "mpa_id", film.getMpa().getId());
+    /**
+     * Собирает фильмы из строк, отсортированных по идентификатору фильма, где каждая строка несёт один жанр.
+     * Фильм передаётся дальше, как только начинается следующий, поэтому в памяти держится только один фильм.
+     */
+    private static class FilmRowAggregator implements RowCallbackHandler {
+        private final RowMapper<Film> filmMapper;
+        private final GenreStorage genreStorage;
+        private final Consumer<Film> action;
+        private Film film;
+        private List<Genre> genres;
+
+        FilmRowAggregator(RowMapper<Film> filmMapper, GenreStorage genreStorage, Consumer<Film> action) {
+            this.filmMapper = filmMapper;
+            this.genreStorage = genreStorage;
+            this.action = action;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int id = rs.getInt("id");
+            if (film == null || film.getId() != id) {
+                finish();
+                film = filmMapper.mapRow(rs, rs.getRow());
+                genres = new ArrayList<>();
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                genres.add(genreStorage.getGenreById(genreId));
+            }
+        }
+
+        void finish() {
+            if (film != null) {
+                action.accept(film.toBuilder().genres(genres).build());
+                film = null;
+            }
+        }
     }
 }
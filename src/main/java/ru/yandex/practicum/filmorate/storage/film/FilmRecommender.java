@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.IntCounter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов по лайкам похожих пользователей. Похожие пользователи — те, у кого больше всего
+ * общих лайков с пользователем; из них берутся {@code similarUsers} самых похожих, а каждый их фильм,
+ * ещё не понравившийся пользователю, получает вес, равный числу общих лайков с тем, кто его лайкнул.
+ * Каждый этап просматривает не больше {@code maxEdges} лайков, поэтому время ответа не зависит от размера базы.
+ * Начиная с {@code parallelThreshold} просматриваемых лайков подсчёт раскладывается по ядрам общего пула.
+ */
+@Slf4j
+@Component
+public class FilmRecommender {
+    private static final int[] NO_FILMS = new int[0];
+
+    private final LikeIndex likeIndex;
+    private final int similarUsers;
+    private final int maxEdges;
+    private final int parallelThreshold;
+
+    public FilmRecommender(LikeIndex likeIndex,
+                           @Value("${filmorate.recommendations.films.similar-users}") int similarUsers,
+                           @Value("${filmorate.recommendations.films.max-edges}") int maxEdges,
+                           @Value("${filmorate.recommendations.films.parallel-threshold}") int parallelThreshold) {
+        this.likeIndex = likeIndex;
+        this.similarUsers = similarUsers;
+        this.maxEdges = maxEdges;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Возвращает до limit идентификаторов фильмов по убыванию веса, при равенстве — по возрастанию id.
+     */
+    public int[] recommend(int userId, int limit) {
+        int[] liked = likeIndex.getFilms(userId);
+        if (liked.length == 0) {
+            return NO_FILMS;
+        }
+        // Сначала самые редкие фильмы: они точнее выделяют похожих пользователей и дешевле в обходе,
+        // а до самых популярных при исчерпании бюджета дело может не дойти.
+        long[] byPopularity = new long[liked.length];
+        for (int i = 0; i < liked.length; i++) {
+            byPopularity[i] = ((long) likeIndex.countLikers(liked[i]) << Integer.SIZE) | i;
+        }
+        Arrays.sort(byPopularity);
+        int[][] likers = new int[liked.length][];
+        int[] likerCounts = new int[liked.length];
+        int films = 0;
+        int edges = 0;
+        for (long key : byPopularity) {
+            if (edges >= maxEdges) {
+                break;
+            }
+            likers[films] = likeIndex.getLikers(liked[(int) key], maxEdges - edges);
+            likerCounts[films] = likers[films].length;
+            edges += likerCounts[films++];
+        }
+        IntCounter overlaps = count(likers, likerCounts, null, films, new int[]{userId}, edges);
+        int[] similar = overlaps.top(similarUsers);
+        if (similar.length == 0) {
+            return NO_FILMS;
+        }
+
+        int filmsPerUser = Math.max(1, maxEdges / similar.length);
+        int[][] similarFilms = new int[similar.length][];
+        int[] filmCounts = new int[similar.length];
+        int[] weights = new int[similar.length];
+        int candidates = 0;
+        for (int i = 0; i < similar.length; i++) {
+            similarFilms[i] = likeIndex.getFilms(similar[i]);
+            filmCounts[i] = Math.min(similarFilms[i].length, filmsPerUser);
+            weights[i] = overlaps.get(similar[i]);
+            candidates += filmCounts[i];
+        }
+        int[] ranked = count(similarFilms, filmCounts, weights, similar.length, liked, candidates).top(limit);
+        log.debug("Рекомендации фильмов для пользователя {} рассчитаны. Просмотрено лайков: ({}), "
+                + "похожих пользователей: ({}), рекомендаций: ({})", userId, edges + candidates, similar.length,
+                ranked.length);
+        return ranked;
+    }
+
+    /**
+     * Суммирует веса идентификаторов из первых lengths[i] элементов первых size списков.
+     * Большие объёмы делятся между ядрами: каждое считает свою часть списков, затем счётчики складываются.
+     */
+    private IntCounter count(int[][] lists, int[] lengths, int[] weights, int size, int[] excluded, int edges) {
+        int parts = edges < parallelThreshold ? 1 : Math.min(ForkJoinPool.getCommonPoolParallelism(), size);
+        if (parts <= 1) {
+            return countPart(lists, lengths, weights, size, excluded, 0, 1);
+        }
+        return IntStream.range(0, parts)
+                .parallel()
+                .mapToObj(part -> countPart(lists, lengths, weights, size, excluded, part, parts))
+                .reduce((left, right) -> {
+                    left.addAll(right);
+                    return left;
+                })
+                .orElseThrow();
+    }
+
+    private static IntCounter countPart(int[][] lists, int[] lengths, int[] weights, int size, int[] excluded,
+                                        int part, int parts) {
+        int edges = 0;
+        for (int i = part; i < size; i += parts) {
+            edges += lengths[i];
+        }
+        // Таблица сразу рассчитана на всех возможных кандидатов, чтобы не перестраивать её во время обхода.
+        IntCounter counter = new IntCounter(excluded.length + edges);
+        for (int id : excluded) {
+            counter.exclude(id);
+        }
+        for (int i = part; i < size; i += parts) {
+            int[] list = lists[i];
+            int weight = weights == null ? 1 : weights[i];
+            for (int j = 0; j < lengths[i]; j++) {
+                counter.add(list[j], weight);
+            }
+        }
+        return counter;
+    }
+}
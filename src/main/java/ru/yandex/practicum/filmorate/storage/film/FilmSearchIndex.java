@@ -0,0 +1,547 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов. Текст разбивается на слова из букв и цифр
+ * любого алфавита, приводится к нижнему регистру, «ё» заменяется на «е». Для каждого слова хранится
+ * отсортированный по идентификатору список фильмов с частотой слова в названии и в описании.
+ * Списки не изменяются после публикации и заменяются копией при изменении фильма, поэтому поиск
+ * работает без блокировок; изменения выполняются по одному, а пакет фильмов сливается со списком каждого слова
+ * за одно копирование.
+ * Слова лежат в упорядоченной карте, поэтому последнее слово запроса ищется и как префикс (автодополнение).
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int[] NO_FILMS = new int[0];
+    private static final int TITLE_WEIGHT = 3;
+    private static final double PREFIX_WEIGHT = 0.5;
+    // Сколько слов с общим префиксом учитывается для последнего слова запроса.
+    private static final int MAX_PREFIX_TERMS = 100;
+    // Во сколько раз список слова должен быть длиннее уже найденных фильмов, чтобы искать в нём двоичным поиском.
+    private static final int GALLOP_RATIO = 16;
+    private static final int FREQUENCY_BITS = 16;
+    private static final int FREQUENCY_MASK = (1 << FREQUENCY_BITS) - 1;
+    // Оценка памяти для 64-битной JVM со сжатыми указателями: узел карты, строка, списки и их заголовки.
+    private static final int TERM_BYTES = 130;
+    private static final int TERM_CHAR_BYTES = 2;
+    private static final int POSTING_BYTES = 8;
+    private static final int FILM_BYTES = 64;
+    private static final int FILM_TERM_BYTES = 4;
+
+    private final NavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final Map<Integer, String[]> filmTerms = new ConcurrentHashMap<>();
+    private volatile long termCount;
+    private volatile long termChars;
+    private volatile long postingCount;
+    private volatile long filmTermCount;
+
+    public FilmSearchIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("filmorate.search.index.terms", this, index -> index.termCount)
+                .description("Количество различных слов в поисковом индексе")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.search.index.postings", this, index -> index.postingCount)
+                .description("Количество пар «слово — фильм» в поисковом индексе")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.search.index.memory", this, FilmSearchIndex::estimatedMemoryBytes)
+                .description("Оценка памяти, занимаемой поисковым индексом")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Индексирует фильм, заменяя его прежние слова.
+     */
+    public synchronized void index(int filmId, String name, String description) {
+        removeTerms(filmId);
+        Map<String, Integer> frequencies = frequencies(name, description);
+        String[] keys = new String[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            keys[i++] = addPosting(entry.getKey(), filmId, entry.getValue());
+        }
+        filmTerms.put(filmId, keys);
+        filmTermCount += keys.length;
+    }
+
+    /**
+     * Индексирует пакет фильмов: списки фильмов пакета собираются по словам и сливаются с опубликованным списком
+     * каждого слова за одно копирование, а не копированием списка на каждый фильм. Если фильм встречается
+     * в пакете несколько раз, индексируется последняя его версия.
+     */
+    public synchronized void indexAll(Collection<Film> films) {
+        Map<Integer, Film> latest = new LinkedHashMap<>();
+        films.forEach(film -> latest.put(film.getId(), film));
+        Map<String, GrowingPostings> batch = new HashMap<>();
+        Map<Integer, String[]> batchTerms = new HashMap<>();
+        for (Film film : latest.values()) {
+            removeTerms(film.getId());
+            Map<String, Integer> frequencies = frequencies(film.getName(), film.getDescription());
+            String[] keys = new String[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                batch.computeIfAbsent(entry.getKey(), term -> new GrowingPostings())
+                        .add(film.getId(), entry.getValue());
+                keys[i++] = entry.getKey();
+            }
+            batchTerms.put(film.getId(), keys);
+        }
+        Map<String, String> canonical = new HashMap<>();
+        batch.forEach((term, list) -> {
+            Postings added = list.freeze();
+            Postings current = terms.get(term);
+            if (current == null) {
+                terms.put(term, added);
+                termCount++;
+                termChars += term.length();
+                canonical.put(term, term);
+            } else {
+                terms.put(term, current.merge(added));
+                canonical.put(term, terms.ceilingKey(term));
+            }
+            postingCount += list.size;
+        });
+        batchTerms.forEach((filmId, keys) -> {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = canonical.get(keys[i]);
+            }
+            filmTerms.put(filmId, keys);
+            filmTermCount += keys.length;
+        });
+    }
+
+    /**
+     * Загрузчик для построения индекса заново: фильмы копятся в растущих списках без копирования
+     * при каждом добавлении, а готовый индекс публикуется целиком в {@link Loader#finish()}.
+     */
+    public Loader loader() {
+        return new Loader();
+    }
+
+    public synchronized void clear() {
+        terms.clear();
+        filmTerms.clear();
+        termCount = 0;
+        termChars = 0;
+        postingCount = 0;
+        filmTermCount = 0;
+    }
+
+    /**
+     * До limit идентификаторов фильмов, содержащих все слова запроса, по убыванию релевантности,
+     * при равенстве — по возрастанию id. Последнее слово запроса может быть началом слова.
+     */
+    public int[] search(String query, boolean byTitle, boolean byDescription, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return NO_FILMS;
+        }
+        int films = Math.max(filmTerms.size(), 1);
+        List<TermMatches> words = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            TermMatches word = terms(tokens.get(i), i == tokens.size() - 1, films);
+            if (word.filmCount == 0) {
+                return NO_FILMS;
+            }
+            words.add(word);
+        }
+        // Начинаем с самого редкого слова: остальные слова только отсеивают уже найденные фильмы.
+        words.sort(Comparator.comparingInt(word -> word.filmCount));
+        Matches result = words.get(0).collect(byTitle, byDescription);
+        for (int i = 1; i < words.size() && result.size > 0; i++) {
+            TermMatches word = words.get(i);
+            result = (long) result.size * GALLOP_RATIO < word.filmCount
+                    ? word.probe(result, byTitle, byDescription)
+                    : result.intersect(word.collect(byTitle, byDescription));
+        }
+        return result.top(limit);
+    }
+
+    public long estimatedMemoryBytes() {
+        return termCount * TERM_BYTES + termChars * TERM_CHAR_BYTES + postingCount * POSTING_BYTES
+                + (long) filmTerms.size() * FILM_BYTES + filmTermCount * FILM_TERM_BYTES;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                token.append(lower == 'ё' ? 'е' : lower);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // Частота в названии хранится в старших 16 битах, в описании — в младших.
+    private static Map<String, Integer> frequencies(String name, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(name)) {
+            frequencies.merge(token, 1 << FREQUENCY_BITS, FilmSearchIndex::addFrequencies);
+        }
+        for (String token : tokenize(description)) {
+            frequencies.merge(token, 1, FilmSearchIndex::addFrequencies);
+        }
+        return frequencies;
+    }
+
+    private static int addFrequencies(int left, int right) {
+        int title = Math.min((left >>> FREQUENCY_BITS) + (right >>> FREQUENCY_BITS), FREQUENCY_MASK);
+        int description = Math.min((left & FREQUENCY_MASK) + (right & FREQUENCY_MASK), FREQUENCY_MASK);
+        return title << FREQUENCY_BITS | description;
+    }
+
+    private String addPosting(String term, int filmId, int frequency) {
+        Postings current = terms.get(term);
+        if (current == null) {
+            terms.put(term, new Postings(new int[]{filmId}, new int[]{frequency}));
+            termCount++;
+            termChars += term.length();
+        } else {
+            terms.put(term, current.with(filmId, frequency));
+            // Фильмы хранят ссылку на строку из карты, а не свою копию.
+            term = terms.ceilingKey(term);
+        }
+        postingCount++;
+        return term;
+    }
+
+    private void removeTerms(int filmId) {
+        String[] previous = filmTerms.remove(filmId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous) {
+            Postings current = terms.get(term);
+            Postings updated = current.without(filmId);
+            if (updated == null) {
+                terms.remove(term);
+                termCount--;
+                termChars -= term.length();
+            } else {
+                terms.put(term, updated);
+            }
+            postingCount--;
+        }
+        filmTermCount -= previous.length;
+    }
+
+    private TermMatches terms(String token, boolean prefix, int films) {
+        List<String> matchedTerms = new ArrayList<>();
+        List<Postings> matchedPostings = new ArrayList<>();
+        if (prefix) {
+            for (Map.Entry<String, Postings> entry
+                    : terms.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                matchedTerms.add(entry.getKey());
+                matchedPostings.add(entry.getValue());
+                if (matchedTerms.size() == MAX_PREFIX_TERMS) {
+                    break;
+                }
+            }
+        } else {
+            Postings postings = terms.get(token);
+            if (postings != null) {
+                matchedTerms.add(token);
+                matchedPostings.add(postings);
+            }
+        }
+        Postings[] postings = matchedPostings.toArray(new Postings[0]);
+        double[] weights = new double[postings.length];
+        int filmCount = 0;
+        for (int i = 0; i < postings.length; i++) {
+            weights[i] = Math.log1p((double) films / postings[i].filmIds.length)
+                    * (matchedTerms.get(i).length() == token.length() ? 1 : PREFIX_WEIGHT);
+            filmCount += postings[i].filmIds.length;
+        }
+        return new TermMatches(postings, weights, filmCount);
+    }
+
+    private static double score(int frequency, double weight, boolean byTitle, boolean byDescription) {
+        int hits = (byTitle ? (frequency >>> FREQUENCY_BITS) * TITLE_WEIGHT : 0)
+                + (byDescription ? frequency & FREQUENCY_MASK : 0);
+        return hits > 0 ? weight * Math.log1p(hits) : 0;
+    }
+
+    /**
+     * Списки фильмов всех слов, подходящих под одно слово запроса (несколько — если оно ищется как префикс).
+     */
+    private static final class TermMatches {
+        private final Postings[] postings;
+        private final double[] weights;
+        private final int filmCount;
+
+        private TermMatches(Postings[] postings, double[] weights, int filmCount) {
+            this.postings = postings;
+            this.weights = weights;
+            this.filmCount = filmCount;
+        }
+
+        Matches collect(boolean byTitle, boolean byDescription) {
+            Matches matches = new Matches(filmCount);
+            for (int i = 0; i < postings.length; i++) {
+                for (int j = 0; j < postings[i].filmIds.length; j++) {
+                    double score = score(postings[i].frequencies[j], weights[i], byTitle, byDescription);
+                    if (score > 0) {
+                        matches.add(postings[i].filmIds[j], score);
+                    }
+                }
+            }
+            return postings.length > 1 ? matches.sortAndMerge() : matches;
+        }
+
+        // Оставляет из найденных фильмов те, что есть в списках слова, не просматривая списки целиком.
+        Matches probe(Matches found, boolean byTitle, boolean byDescription) {
+            Matches result = new Matches(found.size);
+            for (int i = 0; i < found.size; i++) {
+                double score = 0;
+                for (int j = 0; j < postings.length; j++) {
+                    int position = Arrays.binarySearch(postings[j].filmIds, found.filmIds[i]);
+                    if (position >= 0) {
+                        score += score(postings[j].frequencies[position], weights[j], byTitle, byDescription);
+                    }
+                }
+                if (score > 0) {
+                    result.add(found.filmIds[i], found.scores[i] + score);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Postings {
+        private final int[] filmIds;
+        private final int[] frequencies;
+
+        private Postings(int[] filmIds, int[] frequencies) {
+            this.filmIds = filmIds;
+            this.frequencies = frequencies;
+        }
+
+        Postings with(int filmId, int frequency) {
+            int position = Arrays.binarySearch(filmIds, filmId);
+            if (position >= 0) {
+                int[] updatedFrequencies = frequencies.clone();
+                updatedFrequencies[position] = frequency;
+                return new Postings(filmIds, updatedFrequencies);
+            }
+            int insertAt = -position - 1;
+            return new Postings(insert(filmIds, insertAt, filmId), insert(frequencies, insertAt, frequency));
+        }
+
+        Postings without(int filmId) {
+            int position = Arrays.binarySearch(filmIds, filmId);
+            if (position < 0) {
+                return this;
+            }
+            if (filmIds.length == 1) {
+                return null;
+            }
+            return new Postings(delete(filmIds, position), delete(frequencies, position));
+        }
+
+        // Слияние двух списков без общих фильмов: старые фильмы пакета удалены из индекса до слияния.
+        Postings merge(Postings other) {
+            int[] mergedIds = new int[filmIds.length + other.filmIds.length];
+            int[] mergedFrequencies = new int[mergedIds.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < mergedIds.length; k++) {
+                if (j == other.filmIds.length || i < filmIds.length && filmIds[i] < other.filmIds[j]) {
+                    mergedIds[k] = filmIds[i];
+                    mergedFrequencies[k] = frequencies[i++];
+                } else {
+                    mergedIds[k] = other.filmIds[j];
+                    mergedFrequencies[k] = other.frequencies[j++];
+                }
+            }
+            return new Postings(mergedIds, mergedFrequencies);
+        }
+
+        private static int[] insert(int[] values, int position, int value) {
+            int[] updated = new int[values.length + 1];
+            System.arraycopy(values, 0, updated, 0, position);
+            updated[position] = value;
+            System.arraycopy(values, position, updated, position + 1, values.length - position);
+            return updated;
+        }
+
+        private static int[] delete(int[] values, int position) {
+            int[] updated = new int[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, position);
+            System.arraycopy(values, position + 1, updated, position, updated.length - position);
+            return updated;
+        }
+    }
+
+    /**
+     * Найденные фильмы с релевантностью в параллельных примитивных массивах, отсортированных по id.
+     */
+    private static final class Matches {
+        private int[] filmIds;
+        private double[] scores;
+        private int size;
+
+        Matches(int capacity) {
+            filmIds = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void add(int filmId, double score) {
+            filmIds[size] = filmId;
+            scores[size++] = score;
+        }
+
+        // Совпадения нескольких слов с одним префиксом: упорядочивает по id и складывает релевантность дублей.
+        Matches sortAndMerge() {
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) filmIds[i] << Integer.SIZE | i;
+            }
+            Arrays.sort(order);
+            Matches merged = new Matches(size);
+            for (long key : order) {
+                int filmId = (int) (key >> Integer.SIZE);
+                double score = scores[(int) key];
+                if (merged.size > 0 && merged.filmIds[merged.size - 1] == filmId) {
+                    merged.scores[merged.size - 1] += score;
+                } else {
+                    merged.add(filmId, score);
+                }
+            }
+            return merged;
+        }
+
+        Matches intersect(Matches other) {
+            Matches result = new Matches(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (filmIds[i] < other.filmIds[j]) {
+                    i++;
+                } else if (filmIds[i] > other.filmIds[j]) {
+                    j++;
+                } else {
+                    result.add(filmIds[i], scores[i++] + other.scores[j++]);
+                }
+            }
+            return result;
+        }
+
+        int[] top(int limit) {
+            Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(i -> scores[i])
+                    .thenComparing(i -> -filmIds[i]);
+            PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, worstFirst);
+            for (int i = 0; i < size; i++) {
+                if (heap.size() < limit) {
+                    heap.add(i);
+                } else if (worstFirst.compare(i, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(i);
+                }
+            }
+            int[] result = new int[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = filmIds[heap.poll()];
+            }
+            return result;
+        }
+    }
+
+    public final class Loader {
+        private final Map<String, GrowingPostings> postings = new HashMap<>();
+        private final Map<Integer, String[]> films = new HashMap<>();
+
+        private Loader() {
+        }
+
+        public void add(int filmId, String name, String description) {
+            Map<String, Integer> frequencies = frequencies(name, description);
+            String[] keys = new String[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                GrowingPostings list = postings.computeIfAbsent(entry.getKey(), term -> new GrowingPostings());
+                list.add(filmId, entry.getValue());
+                keys[i++] = entry.getKey();
+            }
+            films.put(filmId, keys);
+        }
+
+        public void finish() {
+            synchronized (FilmSearchIndex.this) {
+                clear();
+                Map<String, String> canonical = new HashMap<>();
+                postings.forEach((term, list) -> {
+                    terms.put(term, list.freeze());
+                    canonical.put(term, term);
+                    termCount++;
+                    termChars += term.length();
+                    postingCount += list.size;
+                });
+                films.forEach((filmId, keys) -> {
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = canonical.get(keys[i]);
+                    }
+                    filmTerms.put(filmId, keys);
+                    filmTermCount += keys.length;
+                });
+            }
+            log.debug("Поисковый индекс построен. Фильмов: ({}), слов: ({}), оценка памяти: ({}) байт",
+                    films.size(), termCount, estimatedMemoryBytes());
+        }
+    }
+
+    private static final class GrowingPostings {
+        private int[] filmIds = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+        private boolean sorted = true;
+
+        void add(int filmId, int frequency) {
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            sorted &= size == 0 || filmIds[size - 1] < filmId;
+            filmIds[size] = filmId;
+            frequencies[size++] = frequency;
+        }
+
+        Postings freeze() {
+            if (sorted) {
+                return new Postings(Arrays.copyOf(filmIds, size), Arrays.copyOf(frequencies, size));
+            }
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) filmIds[i] << Integer.SIZE | i;
+            }
+            Arrays.sort(order);
+            int[] sortedIds = new int[size];
+            int[] sortedFrequencies = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = (int) (order[i] >> Integer.SIZE);
+                sortedFrequencies[i] = frequencies[(int) order[i]];
+            }
+            return new Postings(sortedIds, sortedFrequencies);
+        }
+    }
+}
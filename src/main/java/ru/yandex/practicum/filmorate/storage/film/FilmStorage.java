@@ -1,23 +1,57 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film addFilm(Film film);
 
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     List<Film> getAllFilms();
 
+    List<Film> getFilmsPage(Integer afterId, Integer limit);
+
+    void streamFilms(Integer afterId, Consumer<Film> action);
+
     Film getFilmById(Integer id);
 
+    /**
+     * Существующие фильмы из списка в порядке идентификаторов в нём; несуществующие пропускаются.
+     */
+    List<Film> getFilmsByIds(List<Integer> ids);
+
     void deleteStorage();
 
     boolean addLike(Integer filmId, Integer userId);
 
+    int addLikes(List<Like> likes);
+
     boolean deleteLike(Integer filmId, Integer userId);
 
-    List<Film> getFilmsByCount(Integer count);
+    List<Film> getFilmsByCount(Integer count, Integer genreId, Integer mpaId, Integer year);
+
+    List<Film> getRecommendations(Integer userId, Integer limit);
+
+    List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, Integer limit);
+
+    Set<Integer> findFilmIds(Collection<Integer> ids);
+
+    /**
+     * Версия всех фильмов вместе с лайками: меняется при любом изменении, влияющем на списки фильмов.
+     */
+    long getVersion();
+
+    /**
+     * Версия фильма: меняется при изменении самого фильма и его жанров, но не лайков.
+     * Для несуществующего фильма выбрасывается NotFoundException, как при его получении.
+     */
+    long getFilmVersion(Integer id);
 }
@@ -1,36 +1,99 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.AdjacencyChangesCollector;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.VersionCounter;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MPAStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.wal.Journaled;
+import ru.yandex.practicum.filmorate.storage.wal.WalRecord;
+import ru.yandex.practicum.filmorate.storage.wal.WalRecord.Operation;
+import ru.yandex.practicum.filmorate.storage.wal.WriteAheadLog;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Хранилище фильмов в памяти для профиля in-memory. Фильмы лежат в упорядоченной по идентификатору
+ * конкурентной карте, поэтому страницы и потоковая выдача читаются без блокировок; лайки, рейтинг популярных
+ * фильмов, рекомендации и поиск ведутся в тех же индексах, что и у хранилища в базе.
+ * Изменения одного фильма и его лайков выполняются под монитором полосы, в которую попадает идентификатор фильма,
+ * чтобы карта и индексы менялись в одном порядке. Под тем же монитором изменение дописывается в журнал
+ * {@link WriteAheadLog}, а ответ возвращается после того, как журнал записан на диск.
+ */
 @Slf4j
-@Component
-public class InMemoryFilmStorage implements FilmStorage {
-    private static final Map<Integer, Film> films = new HashMap<>();
+@RequiredArgsConstructor
+@Repository
+@Profile("in-memory")
+@Qualifier("InMemoryFilmStorage")
+public class InMemoryFilmStorage implements FilmStorage, Journaled {
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final VersionCounter versions = new VersionCounter();
+    private final GenreStorage genreStorage;
+    private final MPAStorage mpaStorage;
+    private final UserStorage userStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final LikeIndex likeIndex;
+    private final FilmRecommender filmRecommender;
+    private final FilmSearchIndex filmSearchIndex;
+    private final WriteAheadLog wal;
+    // Лайки из журнала копятся здесь и попадают в индексы одним перестроением в recovered().
+    private final AdjacencyChangesCollector recoveredLikes = new AdjacencyChangesCollector();
 
     @Override
     public Film addFilm(Film film) {
-        films.put(film.getId(), film);
-        log.debug("Фильм добавлен в хранилище. {}", film);
-        return film.toBuilder().build();
+        checkReferences(film);
+        Film created = insert(film);
+        wal.sync();
+        return created;
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        // Как и в базе, пакет добавляется целиком или не добавляется совсем: ссылки проверяются до записи.
+        films.forEach(this::checkReferences);
+        List<Film> created = films.stream()
+                .map(this::insert)
+                .collect(Collectors.toList());
+        wal.sync();
+        log.debug("Пакетно добавлено фильмов: ({})", created.size());
+        return created;
     }
 
     @Override
     public Film updateFilm(Film film) {
-        if (!films.containsKey(film.getId())) {
-            log.warn("Фильм с идентификатором {} не существует!", film.getId());
-            throw new NotFoundException("Фильм с идентификатором " + film.getId() + " не существует!");
+        checkReferences(film);
+        Film stored;
+        long sequence;
+        synchronized (locks.get(film.getId())) {
+            if (!films.containsKey(film.getId())) {
+                log.warn("Фильм с идентификатором {} не существует!", film.getId());
+                throw new NotFoundException("Фильм с идентификатором " + film.getId() + " не существует!");
+            }
+            stored = store(film);
+            sequence = wal.append(wal.json(Operation.FILM, stored));
         }
-        films.put(film.getId(), film);
-        log.debug("Обновлённый фильм добавлен в хранилище. {}", film);
-        return film.toBuilder().build();
+        wal.await(sequence);
+        return stored;
     }
 
     @Override
@@ -38,32 +101,282 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getFilmsPage(Integer afterId, Integer limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamFilms(Integer afterId, Consumer<Film> action) {
+        films.tailMap(afterId, false).values().forEach(action);
+    }
+
     @Override
     public Film getFilmById(Integer id) {
-        if (!films.containsKey(id)) {
+        Film film = films.get(id);
+        if (film == null) {
             log.warn("Фильм с идентификатором {} не существует!", id);
             throw new NotFoundException("Фильм с идентификатором " + id + " не существует!");
         }
-        return films.get(id).toBuilder().build();
+        return film;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Integer> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public void deleteStorage() {
+        films.keySet().forEach(id -> genreStorage.updateFilmGenres(id, List.of()));
         films.clear();
+        popularFilmsIndex.clear();
+        likeIndex.clear();
+        filmSearchIndex.clear();
+        versions.changedAll();
+        wal.await(wal.append(WalRecord.of(Operation.CLEAR_FILMS, lastId.get())));
     }
 
     @Override
     public boolean addLike(Integer filmId, Integer userId) {
-        return false;
+        requireUser(userId);
+        long sequence = 0;
+        synchronized (locks.get(filmId)) {
+            requireFilm(filmId);
+            if (!likeIndex.hasLike(filmId, userId)) {
+                likeIndex.addLike(filmId, userId);
+                popularFilmsIndex.changeLikes(filmId, 1);
+                versions.changed();
+                sequence = wal.append(WalRecord.of(Operation.LIKE, filmId, userId));
+            }
+        }
+        wal.await(sequence);
+        return true;
+    }
+
+    /**
+     * Как и хранилище в базе, отклоняет пакет целиком, если в нём есть несуществующий фильм или пользователь:
+     * тогда пакетная запись повторяет лайки по одному и сообщает об ошибке для каждого из них.
+     */
+    @Override
+    public int addLikes(List<Like> likes) {
+        for (Like like : likes) {
+            if (!films.containsKey(like.getFilmId())) {
+                throw missingInBatch("Фильм с идентификатором id = " + like.getFilmId() + " не существует");
+            }
+            if (!userStorage.findUserById(like.getUserId())) {
+                throw missingInBatch("Пользователь с идентификатором id = " + like.getUserId() + " не существует");
+            }
+        }
+        int added = 0;
+        long sequence = 0;
+        for (Like like : likes) {
+            synchronized (locks.get(like.getFilmId())) {
+                if (films.containsKey(like.getFilmId()) && !likeIndex.hasLike(like.getFilmId(), like.getUserId())) {
+                    likeIndex.addLike(like.getFilmId(), like.getUserId());
+                    popularFilmsIndex.changeLikes(like.getFilmId(), 1);
+                    versions.changed();
+                    sequence = wal.append(WalRecord.of(Operation.LIKE, like.getFilmId(), like.getUserId()));
+                    added++;
+                }
+            }
+        }
+        // Пакет подтверждается одним ожиданием: последняя запись ложится на диск вместе со всеми предыдущими.
+        wal.await(sequence);
+        log.debug("Пакетно добавлено лайков: ({})", added);
+        return added;
     }
 
     @Override
     public boolean deleteLike(Integer filmId, Integer userId) {
+        boolean removed;
+        long sequence = 0;
+        synchronized (locks.get(filmId)) {
+            removed = likeIndex.hasLike(filmId, userId);
+            if (removed) {
+                likeIndex.removeLike(filmId, userId);
+                popularFilmsIndex.changeLikes(filmId, -1);
+                versions.changed();
+                sequence = wal.append(WalRecord.of(Operation.UNLIKE, filmId, userId));
+            } else {
+                requireFilm(filmId);
+            }
+        }
+        if (removed) {
+            wal.await(sequence);
+            return true;
+        }
+        requireUser(userId);
         return false;
     }
 
     @Override
-    public List<Film> getFilmsByCount(Integer count) {
-        return null;
+    public List<Film> getFilmsByCount(Integer count, Integer genreId, Integer mpaId, Integer year) {
+        return getFilmsByIds(popularFilmsIndex.getTop(count, genreId, mpaId, year));
+    }
+
+    @Override
+    public List<Film> getRecommendations(Integer userId, Integer limit) {
+        int[] recommendedIds = filmRecommender.recommend(userId, limit);
+        if (recommendedIds.length == 0) {
+            requireUser(userId);
+        }
+        return getFilmsByIds(Arrays.stream(recommendedIds).boxed().collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, Integer limit) {
+        int[] foundIds = filmSearchIndex.search(query, byTitle, byDescription, limit);
+        return getFilmsByIds(Arrays.stream(foundIds).boxed().collect(Collectors.toList()));
+    }
+
+    @Override
+    public Set<Integer> findFilmIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(films::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public long getVersion() {
+        return versions.get();
+    }
+
+    @Override
+    public long getFilmVersion(Integer id) {
+        if (!films.containsKey(id)) {
+            log.warn("Фильм с идентификатором {} не существует!", id);
+            throw new NotFoundException("Фильм с идентификатором " + id + " не существует!");
+        }
+        return versions.get(id);
+    }
+
+    @Override
+    public void replay(WalRecord record) {
+        switch (record.getOperation()) {
+            case FILM:
+                Film film = wal.read(record, Film.class);
+                films.put(film.getId(), film);
+                genreStorage.updateFilmGenres(film.getId(), film.getGenres());
+                lastId.accumulateAndGet(film.getId(), Math::max);
+                break;
+            case LIKE:
+                recoveredLikes.add(record.getInt(1), record.getInt(0));
+                break;
+            case UNLIKE:
+                recoveredLikes.remove(record.getInt(1), record.getInt(0));
+                break;
+            case LIKES:
+                recoveredLikes.addAll(record.getInt(0), record.getInts(1));
+                break;
+            case CLEAR_FILMS:
+                films.keySet().forEach(id -> genreStorage.updateFilmGenres(id, List.of()));
+                films.clear();
+                recoveredLikes.clear();
+                lastId.set(record.getInt(0));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void recovered() {
+        Map<Integer, int[]> filmsByUserId = recoveredLikes.finish();
+        likeIndex.rebuild(filmsByUserId);
+        Map<Integer, Integer> likes = new HashMap<>();
+        films.keySet().forEach(id -> likes.put(id, 0));
+        filmsByUserId.values().forEach(filmIds -> {
+            for (int filmId : filmIds) {
+                likes.computeIfPresent(filmId, (id, count) -> count + 1);
+            }
+        });
+        popularFilmsIndex.rebuild(likes);
+        FilmSearchIndex.Loader loader = filmSearchIndex.loader();
+        films.values().forEach(film -> {
+            setCategories(film);
+            loader.add(film.getId(), film.getName(), film.getDescription());
+        });
+        loader.finish();
+        log.info("Из журнала восстановлено фильмов: ({}), пользователей с лайками: ({})", films.size(),
+                filmsByUserId.size());
+    }
+
+    @Override
+    public void snapshot(Consumer<WalRecord> out) {
+        out.accept(WalRecord.of(Operation.CLEAR_FILMS, lastId.get()));
+        films.values().forEach(film -> out.accept(wal.json(Operation.FILM, film)));
+        likeIndex.forEachUser((userId, filmIds) -> {
+            if (filmIds.length > 0) {
+                out.accept(WalRecord.of(Operation.LIKES, userId, filmIds));
+            }
+        });
+    }
+
+    /**
+     * Добавляет фильм и его запись в журнал, не дожидаясь записи журнала на диск.
+     */
+    private Film insert(Film film) {
+        int id = lastId.incrementAndGet();
+        synchronized (locks.get(id)) {
+            Film stored = store(film.toBuilder().id(id).build());
+            wal.append(wal.json(Operation.FILM, stored));
+            return stored;
+        }
+    }
+
+    /**
+     * Сохраняет фильм со справочными рейтингом MPA и жанрами и обновляет индексы. Вызывается под монитором
+     * полосы фильма.
+     */
+    private Film store(Film film) {
+        Film stored = film.toBuilder()
+                .mpa(mpaStorage.getMPAById(film.getMpa().getId()))
+                .genres(genreStorage.updateFilmGenres(film.getId(), film.getGenres()))
+                .build();
+        films.put(stored.getId(), stored);
+        setCategories(stored);
+        filmSearchIndex.index(stored.getId(), stored.getName(), stored.getDescription());
+        versions.changed(stored.getId());
+        log.debug("Фильм сохранён в памяти. {}", stored);
+        return stored;
+    }
+
+    private void setCategories(Film film) {
+        popularFilmsIndex.setCategories(film.getId(),
+                film.getGenres().stream().map(Genre::getId).collect(Collectors.toList()),
+                film.getMpa().getId(),
+                film.getReleaseDate() == null ? null : film.getReleaseDate().getYear());
+    }
+
+    private void checkReferences(Film film) {
+        mpaStorage.getMPAById(film.getMpa().getId());
+        film.getGenres().stream()
+                .filter(genre -> genre != null && genre.getId() != null)
+                .forEach(genre -> genreStorage.getGenreById(genre.getId()));
+    }
+
+    private void requireFilm(Integer filmId) {
+        if (!films.containsKey(filmId)) {
+            log.warn("Попытка получить фильм с несуществующим идентификатором id = {}", filmId);
+            throw new NotFoundException("Фильм с идентификатором id = " + filmId + " не существует");
+        }
+    }
+
+    private static DataIntegrityViolationException missingInBatch(String message) {
+        log.warn("Пакет лайков отклонён: {}", message);
+        return new DataIntegrityViolationException(message);
+    }
+
+    private void requireUser(Integer userId) {
+        if (!userStorage.findUserById(userId)) {
+            log.warn("Попытка получить пользователя с несуществующим идентификатором id = {}", userId);
+            throw new NotFoundException("Пользователь с идентификатором id = " + userId + " не существует");
+        }
     }
 }
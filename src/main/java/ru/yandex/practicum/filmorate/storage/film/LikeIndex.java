@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AdjacencyIndex;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Лайки в памяти: для каждого пользователя хранится отсортированный массив понравившихся ему фильмов,
+ * для каждого фильма — отсортированный список пользователей, которым он понравился.
+ */
+@Component
+public class LikeIndex {
+    private final AdjacencyIndex likes = new AdjacencyIndex();
+
+    public void rebuild(Map<Integer, int[]> filmsByUserId) {
+        likes.rebuild(filmsByUserId);
+    }
+
+    public void addLike(int filmId, int userId) {
+        likes.add(userId, filmId);
+    }
+
+    public void removeLike(int filmId, int userId) {
+        likes.remove(userId, filmId);
+    }
+
+    public int[] getFilms(int userId) {
+        return likes.get(userId);
+    }
+
+    public boolean hasLike(int filmId, int userId) {
+        return Arrays.binarySearch(likes.get(userId), filmId) >= 0;
+    }
+
+    public int[] getLikers(int filmId) {
+        return likes.getReverse(filmId);
+    }
+
+    /**
+     * Первые limit пользователей по возрастанию id, которым понравился фильм.
+     */
+    public int[] getLikers(int filmId, int limit) {
+        return likes.getReverse(filmId, limit);
+    }
+
+    public int countLikers(int filmId) {
+        return likes.countReverse(filmId);
+    }
+
+    /**
+     * Передаёт каждого пользователя с лайками и отсортированный массив понравившихся ему фильмов.
+     */
+    public void forEachUser(BiConsumer<Integer, int[]> action) {
+        likes.forEach(action);
+    }
+
+    public void clear() {
+        likes.clear();
+    }
+}
@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Очередь отложенной записи лайков. Запрос на лайк или его удаление подтверждается сразу после постановки
+ * в очередь, а фоновый поток сбрасывает накопленные изменения в базу пакетами. Изменения одной пары
+ * «фильм — пользователь» схлопываются: в базу уходит только последнее состояние.
+ * Ключ пары — идентификатор фильма в старших 32 битах и идентификатор пользователя в младших,
+ * значение — стоит ли лайк.
+ */
+@Slf4j
+@Component
+public class LikeWriteQueue {
+    // Сколько раз остановка пытается дописать очередь, прежде чем признать оставшиеся изменения потерянными.
+    private static final int FINAL_FLUSH_ATTEMPTS = 3;
+    private static final long FINAL_FLUSH_RETRY_DELAY_MILLIS = 100;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    // Изменения, ещё не переданные в базу, в порядке поступления.
+    private final Map<Long, Boolean> pending = new LinkedHashMap<>();
+    // Изменения, которые пишутся в базу прямо сейчас: до конца записи состояние пары берётся отсюда.
+    private final Map<Long, Boolean> inFlight = new HashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private Consumer<Map<Long, Boolean>> writer;
+    private ScheduledExecutorService scheduler;
+
+    public LikeWriteQueue(@Value("${filmorate.likes.write-behind.enabled}") boolean enabled,
+                          @Value("${filmorate.likes.write-behind.queue-capacity}") int capacity,
+                          @Value("${filmorate.likes.write-behind.batch-size}") int batchSize,
+                          @Value("${filmorate.likes.write-behind.flush-interval}") Duration flushInterval,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        Gauge.builder("filmorate.likes.write-behind.pending", this, LikeWriteQueue::size)
+                .description("Количество изменений лайков, ещё не записанных в базу")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Запускает фоновую запись; writer получает пакет изменений и должен записать его целиком
+     * или выбросить исключение, тогда пакет вернётся в очередь и будет записан при следующем сбросе.
+     */
+    public synchronized void start(Consumer<Map<Long, Boolean>> writer) {
+        this.writer = writer;
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Отложенная запись лайков включена: очередь на {} изменений, пакеты по {}, сброс каждые {} мс",
+                capacity, batchSize, interval);
+    }
+
+    /**
+     * Ставит лайк или его удаление в очередь и возвращает, стоял ли лайк до этого изменения с учётом
+     * ещё не записанных изменений; stored сообщает, стоит ли лайк в базе. Изменение, возвращающее пару
+     * к состоянию в базе, убирает её из очереди, поэтому каждая пара в очереди действительно меняет базу.
+     *
+     * @throws TooManyRequestsException если очередь заполнена
+     */
+    public synchronized boolean submit(int filmId, int userId, boolean liked, BooleanSupplier stored) {
+        long key = key(filmId, userId);
+        Boolean written = inFlight.get(key);
+        boolean current = written == null ? stored.getAsBoolean() : written;
+        Boolean previous = pending.get(key);
+        if (liked == current) {
+            pending.remove(key);
+            return previous == null ? current : previous;
+        }
+        if (previous == null && pending.size() + inFlight.size() >= capacity) {
+            log.warn("Очередь отложенной записи лайков заполнена: {} изменений", capacity);
+            throw new TooManyRequestsException("Слишком много изменений лайков, повторите запрос позже");
+        }
+        pending.put(key, liked);
+        if (pending.size() >= batchSize && scheduler != null && flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flush);
+        }
+        return previous == null ? current : previous;
+    }
+
+    /**
+     * Записывает в базу все накопленные изменения пакетами по batch-size.
+     */
+    public void flush() {
+        flushRequested.set(false);
+        synchronized (flushLock) {
+            Map<Long, Boolean> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                try {
+                    writer.accept(batch);
+                } catch (RuntimeException e) {
+                    log.error("Не удалось записать пакет лайков, пакет возвращён в очередь: {}", e.getMessage());
+                    requeue(batch);
+                    return;
+                } finally {
+                    complete(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Останавливает фоновую запись и синхронно дописывает в базу все оставшиеся изменения. Неудачная запись
+     * повторяется до {@value #FINAL_FLUSH_ATTEMPTS} раз; изменения, которые так и не удалось записать,
+     * уже подтверждены клиентам, поэтому их количество пишется в журнал как ошибка.
+     */
+    public void stop() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = scheduler;
+            scheduler = null;
+        }
+        if (stopped != null) {
+            stopped.shutdown();
+            try {
+                if (!stopped.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Фоновая запись лайков не завершилась за 10 секунд");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writer != null) {
+            for (int attempt = 1; attempt <= FINAL_FLUSH_ATTEMPTS && size() > 0; attempt++) {
+                if (attempt > 1 && !pause(FINAL_FLUSH_RETRY_DELAY_MILLIS * (attempt - 1))) {
+                    break;
+                }
+                flush();
+            }
+        }
+        int lost = size();
+        if (lost > 0) {
+            log.error("Отложенная запись лайков остановлена, потеряно подтверждённых изменений: ({})", lost);
+        } else {
+            log.debug("Отложенная запись лайков остановлена, все изменения записаны");
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size() + inFlight.size();
+    }
+
+    /**
+     * Отбрасывает ещё не записанные изменения. Пакет, который пишется в базу прямо сейчас, дописывается,
+     * после чего очередь пуста целиком.
+     */
+    public void clear() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending.clear();
+                inFlight.clear();
+            }
+        }
+    }
+
+    public static int filmId(long key) {
+        return (int) (key >>> Integer.SIZE);
+    }
+
+    public static int userId(long key) {
+        return (int) key;
+    }
+
+    private static long key(int filmId, int userId) {
+        return (long) filmId << Integer.SIZE | (userId & 0xFFFFFFFFL);
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized Map<Long, Boolean> nextBatch() {
+        Map<Long, Boolean> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, Boolean>> iterator = pending.entrySet().iterator();
+        while (batch.size() < batchSize && iterator.hasNext()) {
+            Map.Entry<Long, Boolean> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+            inFlight.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    // Более новое изменение той же пары, пришедшее во время записи, важнее возвращаемого. Пакет не записан,
+    // поэтому в базе осталось противоположное ему состояние: такое новое изменение базу уже не меняет
+    // и из очереди убирается, иначе его запись ничего бы не изменила и откатила бы рейтинг.
+    private synchronized void requeue(Map<Long, Boolean> batch) {
+        batch.forEach((key, liked) -> {
+            Boolean newer = pending.get(key);
+            if (newer == null) {
+                pending.put(key, liked);
+            } else if (!newer.equals(liked)) {
+                pending.remove(key);
+            }
+        });
+    }
+
+    private synchronized void complete(Map<Long, Boolean> batch) {
+        batch.keySet().forEach(inFlight::remove);
+    }
+}
@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который отдаёт первые N фильмов за O(N).
+ * Каждый фильм лежит в упорядоченном множестве под ключом, в старших битах которого
+ * хранится количество лайков со знаком минус, а в младших — идентификатор фильма.
+ * Отдельный рейтинг ведётся для каждого сочетания фильтров «жанр, рейтинг MPA, год выпуска», в котором
+ * любой из фильтров может отсутствовать, поэтому отфильтрованный рейтинг тоже отдаётся за O(N).
+ * Фильм с k жанрами входит в 4(k + 1) рейтингов, включая общий.
+ */
+@Component
+public class PopularFilmsIndex {
+    private static final int ANY = 0;
+    private static final int SEGMENT_BITS = 21;
+    private static final long ALL_FILMS = segment(ANY, ANY, ANY);
+    private static final long[] ALL_FILMS_ONLY = {ALL_FILMS};
+
+    private final Map<Integer, Integer> likes = new ConcurrentHashMap<>();
+    private final Map<Integer, long[]> filmSegments = new ConcurrentHashMap<>();
+    private final Map<Long, NavigableSet<Long>> rankings = new ConcurrentHashMap<>();
+
+    public synchronized void rebuild(Map<Integer, Integer> likesByFilmId) {
+        clear();
+        NavigableSet<Long> ranking = ranking(ALL_FILMS);
+        likesByFilmId.forEach((filmId, count) -> {
+            likes.put(filmId, count);
+            filmSegments.put(filmId, ALL_FILMS_ONLY);
+            ranking.add(key(filmId, count));
+        });
+    }
+
+    public void addFilm(int filmId) {
+        likes.computeIfAbsent(filmId, id -> {
+            filmSegments.put(id, ALL_FILMS_ONLY);
+            ranking(ALL_FILMS).add(key(id, 0));
+            return 0;
+        });
+    }
+
+    /**
+     * Переносит фильм в рейтинги его жанров, рейтинга MPA и года выпуска; добавляет фильм, если его ещё нет.
+     * Отсутствующий рейтинг MPA или год означает, что фильм попадает только в рейтинги без этого фильтра.
+     */
+    public void setCategories(int filmId, Collection<Integer> genreIds, Integer mpaId, Integer year) {
+        long[] updated = segments(genreIds, mpaId, year);
+        likes.compute(filmId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            long key = key(id, current);
+            for (long segment : updated) {
+                ranking(segment).add(key);
+            }
+            long[] previous = filmSegments.put(id, updated);
+            if (previous != null) {
+                for (long segment : previous) {
+                    // Рейтинг могло убрать параллельное clear(), оно не ждёт изменения категорий.
+                    NavigableSet<Long> ranking = rankings.get(segment);
+                    if (ranking != null && Arrays.binarySearch(updated, segment) < 0) {
+                        ranking.remove(key);
+                    }
+                }
+            }
+            return current;
+        });
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        likes.compute(filmId, (id, count) -> {
+            int newCount = (count == null ? 0 : count) + delta;
+            moveFilm(id, count, newCount);
+            return newCount;
+        });
+    }
+
+    /**
+     * Обнуляет лайки всех фильмов, оставляя фильмы в рейтингах их категорий.
+     */
+    public void clearLikes() {
+        for (Integer filmId : likes.keySet()) {
+            likes.computeIfPresent(filmId, (id, count) -> {
+                moveFilm(id, count, 0);
+                return 0;
+            });
+        }
+    }
+
+    public int getLikes(int filmId) {
+        return likes.getOrDefault(filmId, 0);
+    }
+
+    public boolean contains(int filmId) {
+        return likes.containsKey(filmId);
+    }
+
+    public List<Integer> getTop(int count) {
+        return getTop(count, null, null, null);
+    }
+
+    /**
+     * Первые count фильмов по лайкам среди фильмов с заданными жанром, рейтингом MPA и годом выпуска;
+     * null означает, что фильтр не задан. Фильм попадает в ответ не больше одного раза, но фильм, лайки которого
+     * растут во время обхода, может в него не попасть; версия рейтинга меняется после изменения лайков,
+     * поэтому следующий запрос его увидит.
+     */
+    public List<Integer> getTop(int count, Integer genreId, Integer mpaId, Integer year) {
+        if (!isSegmentValue(genreId) || !isSegmentValue(mpaId) || !isSegmentValue(year)) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Long> ranking = rankings.get(segment(orAny(genreId), orAny(mpaId), orAny(year)));
+        if (ranking == null) {
+            return new ArrayList<>();
+        }
+        List<Integer> filmIds = new ArrayList<>(Math.min(count, likes.size()));
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Long> iterator = ranking.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            int filmId = (int) iterator.next().longValue();
+            if (seen.add(filmId)) {
+                filmIds.add(filmId);
+            }
+        }
+        return filmIds;
+    }
+
+    public synchronized void clear() {
+        likes.clear();
+        filmSegments.clear();
+        rankings.clear();
+    }
+
+    // Вызывается под блокировкой записи фильма в likes; oldCount == null, если фильма ещё нет в рейтингах.
+    private void moveFilm(int filmId, Integer oldCount, int newCount) {
+        long[] segments = filmSegments.computeIfAbsent(filmId, i -> ALL_FILMS_ONLY);
+        for (long segment : segments) {
+            NavigableSet<Long> ranking = ranking(segment);
+            // Новый ключ добавляется раньше удаления старого, поэтому читатель не теряет фильм, который опускается
+            // в рейтинге: старый ключ он либо уже прошёл, либо дойдёт до нового. Фильм, который поднимается,
+            // читатель может пропустить: новый ключ встаёт перед уже пройденными, а старый удаляется раньше,
+            // чем до него дойдёт обход. Итераторы ConcurrentSkipListSet лишь слабо согласованы.
+            ranking.add(key(filmId, newCount));
+            if (oldCount != null && oldCount != newCount) {
+                ranking.remove(key(filmId, oldCount));
+            }
+        }
+    }
+
+    private NavigableSet<Long> ranking(long segment) {
+        return rankings.computeIfAbsent(segment, s -> new ConcurrentSkipListSet<>());
+    }
+
+    // Все сочетания «жанр или любой × MPA или любой × год или любой», отсортированные для двоичного поиска.
+    private static long[] segments(Collection<Integer> genreIds, Integer mpaId, Integer year) {
+        Set<Integer> genres = new HashSet<>();
+        genres.add(ANY);
+        for (Integer genreId : genreIds) {
+            if (isSegmentValue(genreId) && genreId != null) {
+                genres.add(genreId);
+            }
+        }
+        int[] mpas = isSegmentValue(mpaId) && mpaId != null ? new int[]{ANY, mpaId} : new int[]{ANY};
+        int[] years = isSegmentValue(year) && year != null ? new int[]{ANY, year} : new int[]{ANY};
+        long[] segments = new long[genres.size() * mpas.length * years.length];
+        int i = 0;
+        for (int genre : genres) {
+            for (int mpa : mpas) {
+                for (int releaseYear : years) {
+                    segments[i++] = segment(genre, mpa, releaseYear);
+                }
+            }
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static boolean isSegmentValue(Integer value) {
+        return value == null || value > ANY && value < 1 << SEGMENT_BITS;
+    }
+
+    private static int orAny(Integer value) {
+        return value == null ? ANY : value;
+    }
+
+    private static long segment(int genreId, int mpaId, int year) {
+        return (long) genreId << 2 * SEGMENT_BITS | (long) mpaId << SEGMENT_BITS | year;
+    }
+
+    private static long key(int filmId, int likes) {
+        return ((long) -likes << Integer.SIZE) | (filmId & 0xFFFFFFFFL);
+    }
+}
@@ -1,97 +1,165 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.DictionaryCache;
 
+import javax.annotation.PostConstruct;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 @Slf4j
 @RequiredArgsConstructor
 @Repository
+@Profile("!in-memory")
 @Primary
 @Qualifier("GenreDBStorage")
 public class GenreDBStorage implements GenreStorage {
+    private static final String SELECT_GENRES = "SELECT id, name FROM genres ORDER BY id";
+    private static final String SELECT_GENRE_IDS_BY_FILM_ID = "SELECT genre_id " +
+            "FROM film_genre " +
+            "WHERE film_id = ? " +
+            "ORDER BY genre_id";
+    private static final String SELECT_GENRE_IDS_BY_FILM_IDS = "SELECT film_id, genre_id " +
+            "FROM film_genre " +
+            "WHERE film_id = ANY(?) " +
+            "ORDER BY film_id, genre_id";
+    private static final String DELETE_FILM_GENRE = "DELETE FROM film_genre " +
+            "WHERE film_id = ? AND genre_id = ?";
+    private static final String INSERT_FILM_GENRE = "INSERT INTO film_genre (film_id, genre_id) " +
+            "VALUES (?, ?)";
+
     private final JdbcTemplate jdbcTemplate;
-    private String sql;
+    private final MeterRegistry meterRegistry;
+    private DictionaryCache<Genre> genres;
+
+    @PostConstruct
+    public void loadGenres() {
+        genres = new DictionaryCache<>("genres", () -> jdbcTemplate.query(SELECT_GENRES, getGenreMapper()),
+                Genre::getId, meterRegistry);
+        genres.refresh();
+    }
 
     @Override
     public List<Genre> getAllGenres() {
-        sql = "SELECT id, name FROM genres";
-        return jdbcTemplate.query(sql, getGenreMapper());
+        return genres.getAll();
     }
 
     @Override
     public Genre getGenreById(Integer id) {
-        if (!findGenreById(id)) {
+        Genre genre = genres.get(id);
+        if (genre == null) {
             log.warn("Жанр с идентификатором {} не существует!", id);
             throw new NotFoundException("Жанр с идентификатором " + id + " не существует!");
         }
-        sql = "SELECT id, name FROM genres " +
-                "WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, getGenreMapper(), id);
+        return genre;
+    }
+
+    @Override
+    public long getVersion() {
+        return genres.getVersion();
     }
 
     @Override
     public List<Genre> getGenresByFilmId(Integer filmId) {
-        sql = "SELECT g.id, g.name " +
-                "FROM genres AS g " +
-                "JOIN film_genre AS fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id = ?";
-        return jdbcTemplate.query(sql, getGenreMapper(), filmId);
+        return jdbcTemplate.query(SELECT_GENRE_IDS_BY_FILM_ID,
+                (rs, rowNum) -> getGenreById(rs.getInt("genre_id")), filmId);
     }
 
     @Override
-    public void updateFilmGenres(Integer filmId, Set<Genre> genres) {
-        deleteFilmGenres(filmId);
-        createFilmGenres(filmId, genres);
+    public Map<Integer, List<Genre>> getGenresByFilmIds(Collection<Integer> filmIds) {
+        Map<Integer, List<Genre>> filmGenres = new HashMap<>();
+        if (filmIds.isEmpty()) {
+            return filmGenres;
+        }
+        jdbcTemplate.query(SELECT_GENRE_IDS_BY_FILM_IDS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", filmIds.toArray())),
+                rs -> {
+                    filmGenres.computeIfAbsent(rs.getInt("film_id"), filmId -> new ArrayList<>())
+                            .add(getGenreById(rs.getInt("genre_id")));
+                });
+        return filmGenres;
     }
 
+    /**
+     * Приводит жанры фильма к заданному набору, удаляя и добавляя только отличающиеся строки;
+     * если жанры не изменились, в базу ничего не пишется. Возвращает жанры фильма, упорядоченные по идентификатору.
+     */
     @Override
-    public void deleteFilmGenres(Integer filmId) {
-        sql = "DELETE FROM film_genre " +
-                "WHERE film_id = ?";
-        jdbcTemplate.update(sql, filmId);
-        log.debug("Все жанры были удалены");
+    public List<Genre> updateFilmGenres(Integer filmId, Collection<Genre> genres) {
+        SortedSet<Integer> genreIds = new TreeSet<>();
+        for (Genre genre : genres) {
+            if (genre != null && genre.getId() != null) {
+                genreIds.add(genre.getId());
+            }
+        }
+        Set<Integer> deleted = new HashSet<>(jdbcTemplate.queryForList(SELECT_GENRE_IDS_BY_FILM_ID, Integer.class,
+                filmId));
+        List<Integer> inserted = new ArrayList<>();
+        for (Integer genreId : genreIds) {
+            if (!deleted.remove(genreId)) {
+                inserted.add(genreId);
+            }
+        }
+        batchUpdate(DELETE_FILM_GENRE, filmId, new ArrayList<>(deleted));
+        batchUpdate(INSERT_FILM_GENRE, filmId, inserted);
+        log.debug("Жанры фильма {} обновлены. Удалено: ({}), добавлено: ({})", filmId, deleted.size(),
+                inserted.size());
+        List<Genre> filmGenres = new ArrayList<>(genreIds.size());
+        for (Integer genreId : genreIds) {
+            filmGenres.add(getGenreById(genreId));
+        }
+        return filmGenres;
     }
 
     @Override
-    public void createFilmGenres(Integer filmId, Set<Genre> genres) {
-        List<Genre> genreList = new ArrayList<>(genres);
-        sql = "INSERT INTO film_genre (film_id, genre_id) " +
-                "VALUES (?, ?)";
-        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+    public void createFilmGenres(Map<Integer, Set<Genre>> genresByFilmId) {
+        List<int[]> rows = new ArrayList<>();
+        genresByFilmId.forEach((filmId, genres) -> {
+            genres.forEach(genre -> rows.add(new int[]{filmId, genre.getId()}));
+        });
+        jdbcTemplate.batchUpdate(INSERT_FILM_GENRE, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Genre genre = genreList.get(i);
-                ps.setInt(1, filmId);
-                ps.setInt(2, genre.getId());
+                ps.setInt(1, rows.get(i)[0]);
+                ps.setInt(2, rows.get(i)[1]);
             }
 
             @Override
             public int getBatchSize() {
-                return genreList.size();
+                return rows.size();
             }
         });
-        log.debug("Все жанры фильма были записаны заново");
+        log.debug("Жанры записаны для фильмов: ({})", genresByFilmId.size());
     }
 
-    private boolean findGenreById(Integer id) {
-        sql = "SELECT id FROM genres WHERE id = ?";
-        SqlRowSet filmRaws = jdbcTemplate.queryForRowSet(sql, id);
-        return filmRaws.next();
+    private void batchUpdate(String sql, Integer filmId, List<Integer> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, filmId);
+                ps.setInt(2, genreIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return genreIds.size();
+            }
+        });
     }
 
     private static RowMapper<Genre> getGenreMapper() {
@@ -2,7 +2,9 @@ package ru.yandex.practicum.filmorate.storage.genre;
 
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface GenreStorage {
@@ -12,10 +14,14 @@ public interface GenreStorage {
 
     List<Genre> getGenresByFilmId(Integer filmId);
 
-    void updateFilmGenres(Integer filmId, Set<Genre> genres);
+    Map<Integer, List<Genre>> getGenresByFilmIds(Collection<Integer> filmIds);
 
-    void deleteFilmGenres(Integer filmId);
+    List<Genre> updateFilmGenres(Integer filmId, Collection<Genre> genres);
 
-    void createFilmGenres(Integer filmId, Set<Genre> genres);
+    void createFilmGenres(Map<Integer, Set<Genre>> genresByFilmId);
 
+    /**
+     * Версия справочника жанров: меняется, только если меняется сам справочник.
+     */
+    long getVersion();
 }
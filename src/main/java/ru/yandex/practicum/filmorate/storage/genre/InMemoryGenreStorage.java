@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.DictionaryCache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Жанры в памяти для профиля in-memory. Справочник совпадает с заполняемым миграцией V2,
+ * жанры фильмов хранятся как отсортированные массивы идентификаторов жанров.
+ */
+@Slf4j
+@Repository
+@Profile("in-memory")
+@Qualifier("InMemoryGenreStorage")
+public class InMemoryGenreStorage implements GenreStorage {
+    private static final List<Genre> GENRES = List.of(
+            Genre.builder().id(1).name("Комедия").build(),
+            Genre.builder().id(2).name("Драма").build(),
+            Genre.builder().id(3).name("Мультфильм").build(),
+            Genre.builder().id(4).name("Триллер").build(),
+            Genre.builder().id(5).name("Документальный").build(),
+            Genre.builder().id(6).name("Боевик").build());
+
+    private final DictionaryCache<Genre> genres;
+    private final Map<Integer, int[]> filmGenres = new ConcurrentHashMap<>();
+
+    public InMemoryGenreStorage(MeterRegistry meterRegistry) {
+        genres = new DictionaryCache<>("genres", () -> GENRES, Genre::getId, meterRegistry);
+        genres.refresh();
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        return genres.getAll();
+    }
+
+    @Override
+    public Genre getGenreById(Integer id) {
+        Genre genre = genres.get(id);
+        if (genre == null) {
+            log.warn("Жанр с идентификатором {} не существует!", id);
+            throw new NotFoundException("Жанр с идентификатором " + id + " не существует!");
+        }
+        return genre;
+    }
+
+    @Override
+    public long getVersion() {
+        return genres.getVersion();
+    }
+
+    @Override
+    public List<Genre> getGenresByFilmId(Integer filmId) {
+        return toGenres(filmGenres.get(filmId));
+    }
+
+    @Override
+    public Map<Integer, List<Genre>> getGenresByFilmIds(Collection<Integer> filmIds) {
+        Map<Integer, List<Genre>> result = new HashMap<>();
+        for (Integer filmId : filmIds) {
+            int[] genreIds = filmGenres.get(filmId);
+            if (genreIds != null) {
+                result.put(filmId, toGenres(genreIds));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Заменяет жанры фильма заданным набором и возвращает их, упорядоченные по идентификатору.
+     * Пустой набор удаляет запись о жанрах фильма.
+     */
+    @Override
+    public List<Genre> updateFilmGenres(Integer filmId, Collection<Genre> genres) {
+        int[] genreIds = genres.stream()
+                .filter(genre -> genre != null && genre.getId() != null)
+                .mapToInt(genre -> getGenreById(genre.getId()).getId())
+                .sorted()
+                .distinct()
+                .toArray();
+        if (genreIds.length == 0) {
+            filmGenres.remove(filmId);
+        } else {
+            filmGenres.put(filmId, genreIds);
+        }
+        return toGenres(genreIds);
+    }
+
+    @Override
+    public void createFilmGenres(Map<Integer, Set<Genre>> genresByFilmId) {
+        genresByFilmId.forEach(this::updateFilmGenres);
+        log.debug("Жанры записаны для фильмов: ({})", genresByFilmId.size());
+    }
+
+    private List<Genre> toGenres(int[] genreIds) {
+        if (genreIds == null) {
+            return new ArrayList<>();
+        }
+        List<Genre> result = new ArrayList<>(genreIds.length);
+        for (int genreId : genreIds) {
+            result.add(getGenreById(genreId));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.DictionaryCache;
+
+import java.util.List;
+
+/**
+ * Рейтинги MPA в памяти для профиля in-memory. Справочник совпадает с заполняемым миграцией V2.
+ */
+@Slf4j
+@Repository
+@Profile("in-memory")
+@Qualifier("InMemoryMPAStorage")
+public class InMemoryMPAStorage implements MPAStorage {
+    private static final List<MPA> MPAS = List.of(
+            MPA.builder().id(1).name("G").description("у фильма нет возрастных ограничений").build(),
+            MPA.builder().id(2).name("PG").description("детям рекомендуется смотреть фильм с родителями").build(),
+            MPA.builder().id(3).name("PG-13").description("детям до 13 лет просмотр не желателен").build(),
+            MPA.builder().id(4).name("R")
+                    .description("лицам до 17 лет просматривать фильм можно только в присутствии взрослого").build(),
+            MPA.builder().id(5).name("NC-17").description("лицам до 18 лет просмотр запрещён").build());
+
+    private final DictionaryCache<MPA> mpas;
+
+    public InMemoryMPAStorage(MeterRegistry meterRegistry) {
+        mpas = new DictionaryCache<>("mpa", () -> MPAS, MPA::getId, meterRegistry);
+        mpas.refresh();
+    }
+
+    @Override
+    public List<MPA> getAllMPAs() {
+        return mpas.getAll();
+    }
+
+    @Override
+    public MPA getMPAById(Integer id) {
+        MPA mpa = mpas.get(id);
+        if (mpa == null) {
+            log.warn("MPA с идентификатором {} не существует!", id);
+            throw new NotFoundException("MPA с идентификатором " + id + " не существует!");
+        }
+        return mpa;
+    }
+
+    @Override
+    public long getVersion() {
+        return mpas.getVersion();
+    }
+}
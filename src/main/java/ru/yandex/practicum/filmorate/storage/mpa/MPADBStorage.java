@@ -1,48 +1,59 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.DictionaryCache;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 
 @Slf4j
 @RequiredArgsConstructor
 @Repository
+@Profile("!in-memory")
 @Primary
 @Qualifier("MPADBStorage")
 public class MPADBStorage implements MPAStorage {
+    private static final String SELECT_MPAS = "SELECT id, name, description FROM mpa ORDER BY id";
+
     private final JdbcTemplate jdbcTemplate;
-    private String sql;
+    private final MeterRegistry meterRegistry;
+    private DictionaryCache<MPA> mpas;
+
+    @PostConstruct
+    public void loadMPAs() {
+        mpas = new DictionaryCache<>("mpa", () -> jdbcTemplate.query(SELECT_MPAS, getMPAMapper()),
+                MPA::getId, meterRegistry);
+        mpas.refresh();
+    }
 
     @Override
     public List<MPA> getAllMPAs() {
-        sql = "SELECT id, name, description FROM mpa";
-        return jdbcTemplate.query(sql, getMPAMapper());
+        return mpas.getAll();
     }
 
     @Override
     public MPA getMPAById(Integer id) {
-        if (!findMPAById(id)) {
+        MPA mpa = mpas.get(id);
+        if (mpa == null) {
             log.warn("MPA с идентификатором {} не существует!", id);
             throw new NotFoundException("MPA с идентификатором " + id + " не существует!");
         }
-        sql = "SELECT id, name, description FROM mpa " +
-                "WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, getMPAMapper(), id);
+        return mpa;
     }
 
-    private boolean findMPAById(Integer id) {
-        sql = "SELECT id FROM mpa WHERE id = ?";
-        SqlRowSet filmRaws = jdbcTemplate.queryForRowSet(sql, id);
-        return filmRaws.next();
+    @Override
+    public long getVersion() {
+        return mpas.getVersion();
     }
 
     private static RowMapper<MPA> getMPAMapper() {
@@ -8,4 +8,9 @@ public interface MPAStorage {
     List<MPA> getAllMPAs();
 
     MPA getMPAById(Integer id);
+
+    /**
+     * Версия справочника рейтингов MPA: меняется, только если меняется сам справочник.
+     */
+    long getVersion();
 }
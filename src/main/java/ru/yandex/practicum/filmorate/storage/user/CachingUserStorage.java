@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш пользователей по идентификатору поверх основного хранилища.
+ * Изменённый пользователь удаляется из кэша после записи в хранилище.
+ */
+@Slf4j
+@Repository
+@Profile("!in-memory")
+@Primary
+@Qualifier("CachingUserStorage")
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage userStorage;
+    private final LoadingCache<Integer, User> users;
+
+    public CachingUserStorage(@Qualifier("UserDBStorage") UserStorage userStorage,
+                              @Value("${filmorate.cache.users.maximum-size}") long maximumSize,
+                              @Value("${filmorate.cache.users.expire-after-write}") Duration expireAfterWrite,
+                              MeterRegistry meterRegistry) {
+        this.userStorage = userStorage;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(userStorage::getUserById);
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+    }
+
+    @Override
+    public User addUser(User user) {
+        return userStorage.addUser(user);
+    }
+
+    @Override
+    public List<User> addUsers(List<User> users) {
+        return userStorage.addUsers(users);
+    }
+
+    @Override
+    public User updateUser(User user) {
+        try {
+            return userStorage.updateUser(user);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return userStorage.getAllUsers();
+    }
+
+    @Override
+    public List<User> getUsersPage(Integer afterId, Integer limit) {
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(Integer afterId, Consumer<User> action) {
+        userStorage.streamUsers(afterId, action);
+    }
+
+    @Override
+    public User getUserById(Integer id) {
+        return users.get(id);
+    }
+
+    /**
+     * Пользователи из кэша берутся как есть, остальные загружаются из основного хранилища одним запросом и в кэш
+     * не попадают: загрузка, завершившаяся после обновления, вернула бы в кэш устаревшие данные.
+     */
+    @Override
+    public List<User> getUsersByIds(List<Integer> ids) {
+        Map<Integer, User> found = new HashMap<>(users.getAllPresent(ids));
+        List<Integer> missing = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        userStorage.getUsersByIds(missing).forEach(user -> found.put(user.getId(), user));
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteStorage() {
+        try {
+            userStorage.deleteStorage();
+        } finally {
+            users.invalidateAll();
+        }
+        log.debug("Кэш пользователей очищен");
+    }
+
+    @Override
+    public boolean findUserById(Integer id) {
+        return users.getIfPresent(id) != null || userStorage.findUserById(id);
+    }
+
+    @Override
+    public Set<Integer> findUserIds(Collection<Integer> ids) {
+        return userStorage.findUserIds(ids);
+    }
+
+    @Override
+    public boolean addFriend(Integer userId, Integer friendId) {
+        return userStorage.addFriend(userId, friendId);
+    }
+
+    @Override
+    public int addFriends(Integer userId, List<Integer> friendIds) {
+        return userStorage.addFriends(userId, friendIds);
+    }
+
+    @Override
+    public boolean deleteFriend(Integer userId, Integer friendId) {
+        return userStorage.deleteFriend(userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriendsById(Integer userId) {
+        return userStorage.getFriendsById(userId);
+    }
+
+    @Override
+    public List<User> getMutualFriendsById(Integer userId, Integer otherUserId) {
+        return userStorage.getMutualFriendsById(userId, otherUserId);
+    }
+
+    @Override
+    public Map<Integer, List<User>> getMutualFriendsByIds(Integer userId, List<Integer> otherUserIds) {
+        return userStorage.getMutualFriendsByIds(userId, otherUserIds);
+    }
+
+    @Override
+    public List<User> getRecommendations(Integer userId, Integer limit) {
+        return userStorage.getRecommendations(userId, limit);
+    }
+}
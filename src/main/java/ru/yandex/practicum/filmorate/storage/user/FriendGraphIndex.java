@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AdjacencyIndex;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранятся отсортированные массивы его друзей
+ * и пользователей, добавивших его в друзья.
+ */
+@Component
+public class FriendGraphIndex {
+    private static final int[] NO_FRIENDS = new int[0];
+    // Во сколько раз один список должен быть длиннее другого, чтобы искать в нём двоичным поиском, а не слиянием.
+    private static final int GALLOP_RATIO = 16;
+
+    private final AdjacencyIndex friends = new AdjacencyIndex();
+
+    public void rebuild(Map<Integer, int[]> friendsByUserId) {
+        friends.rebuild(friendsByUserId);
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friends.add(userId, friendId);
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friends.remove(userId, friendId);
+    }
+
+    public int[] getFriends(int userId) {
+        return friends.get(userId);
+    }
+
+    /**
+     * Пользователи, у которых пользователь userId есть в друзьях.
+     */
+    public int[] getFollowers(int userId) {
+        return friends.getReverse(userId);
+    }
+
+    public int[] getMutualFriends(int userId, int otherUserId) {
+        return intersect(getFriends(userId), getFriends(otherUserId));
+    }
+
+    /**
+     * Передаёт каждого пользователя с друзьями и отсортированный массив его друзей.
+     */
+    public void forEachUser(BiConsumer<Integer, int[]> action) {
+        friends.forEach(action);
+    }
+
+    public void clear() {
+        friends.clear();
+    }
+
+    /**
+     * Пересечение двух отсортированных массивов. Если один массив намного короче другого,
+     * его элементы ищутся в длинном двоичным поиском, иначе массивы сливаются за один проход.
+     */
+    static int[] intersect(int[] left, int[] right) {
+        if (left.length > right.length) {
+            int[] swap = left;
+            left = right;
+            right = swap;
+        }
+        if (left.length == 0) {
+            return NO_FRIENDS;
+        }
+        int[] result = new int[left.length];
+        int size = 0;
+        if ((long) left.length * GALLOP_RATIO < right.length) {
+            int from = 0;
+            for (int value : left) {
+                int position = Arrays.binarySearch(right, from, right.length, value);
+                if (position >= 0) {
+                    result[size++] = value;
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+                if (from == right.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < left.length && j < right.length) {
+                if (left[i] < right[j]) {
+                    i++;
+                } else if (left[i] > right[j]) {
+                    j++;
+                } else {
+                    result[size++] = left[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
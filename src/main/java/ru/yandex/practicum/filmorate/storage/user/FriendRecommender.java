@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.IntCounter;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Рекомендации «возможно, вы знакомы»: друзья друзей пользователя, которых нет у него в друзьях,
+ * упорядоченные по количеству общих друзей (при равенстве — по идентификатору).
+ * Обход графа ограничен: раскрывается не больше {@code maxFriends} друзей пользователя и просматривается
+ * не больше {@code maxEdges} рёбер, поэтому время ответа не зависит от размера графа.
+ * Результат кэшируется для каждого пользователя и сбрасывается при изменении его друзей
+ * или друзей тех, у кого он есть в друзьях.
+ */
+@Slf4j
+@Component
+public class FriendRecommender {
+    private final FriendGraphIndex friendGraphIndex;
+    private final int maxLimit;
+    private final int maxFriends;
+    private final int maxEdges;
+    private final Cache<Integer, int[]> recommendations;
+
+    public FriendRecommender(FriendGraphIndex friendGraphIndex,
+                             @Value("${filmorate.recommendations.friends.max-limit}") int maxLimit,
+                             @Value("${filmorate.recommendations.friends.max-friends}") int maxFriends,
+                             @Value("${filmorate.recommendations.friends.max-edges}") int maxEdges,
+                             @Value("${filmorate.recommendations.friends.cache.maximum-size}") long maximumSize,
+                             @Value("${filmorate.recommendations.friends.cache.expire-after-write}")
+                             Duration expireAfterWrite,
+                             MeterRegistry meterRegistry) {
+        this.friendGraphIndex = friendGraphIndex;
+        this.maxLimit = maxLimit;
+        this.maxFriends = maxFriends;
+        this.maxEdges = maxEdges;
+        this.recommendations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recommendations, "friendRecommendations");
+    }
+
+    /**
+     * Возвращает до limit идентификаторов рекомендуемых пользователей; в кэше хранится не больше maxLimit.
+     */
+    public int[] recommend(int userId, int limit) {
+        int[] ranked = recommendations.get(userId, this::compute);
+        return ranked.length <= limit ? ranked : Arrays.copyOf(ranked, limit);
+    }
+
+    /**
+     * Сбрасывает рекомендации пользователя и всех, кто видит его друзей как друзей своих друзей.
+     */
+    public void invalidate(int userId) {
+        recommendations.invalidate(userId);
+        for (int followerId : friendGraphIndex.getFollowers(userId)) {
+            recommendations.invalidate(followerId);
+        }
+    }
+
+    public void invalidateAll() {
+        recommendations.invalidateAll();
+    }
+
+    int[] compute(int userId) {
+        int[] friends = friendGraphIndex.getFriends(userId);
+        int expanded = Math.min(friends.length, maxFriends);
+        if (expanded == 0) {
+            return new int[0];
+        }
+        int edgesPerFriend = Math.max(1, maxEdges / expanded);
+        int[][] friendsOfFriends = new int[expanded][];
+        int edges = 0;
+        for (int i = 0; i < expanded; i++) {
+            friendsOfFriends[i] = friendGraphIndex.getFriends(friends[i]);
+            edges += Math.min(friendsOfFriends[i].length, edgesPerFriend);
+        }
+        // Таблица сразу рассчитана на всех возможных кандидатов, чтобы не перестраивать её во время обхода.
+        IntCounter counter = new IntCounter(friends.length + 1 + edges);
+        counter.exclude(userId);
+        for (int friendId : friends) {
+            counter.exclude(friendId);
+        }
+        for (int i = 0; i < expanded; i++) {
+            int[] friendsOfFriend = friendsOfFriends[i];
+            int friendEdges = Math.min(friendsOfFriend.length, edgesPerFriend);
+            for (int j = 0; j < friendEdges; j++) {
+                counter.increment(friendsOfFriend[j]);
+            }
+        }
+        int[] ranked = counter.top(maxLimit);
+        log.debug("Рекомендации для пользователя {} рассчитаны. Раскрыто друзей: ({}), рекомендаций: ({})",
+                userId, expanded, ranked.length);
+        return ranked;
+    }
+}
@@ -1,42 +1,79 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.stereotype.Component;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.AdjacencyChangesCollector;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.wal.Journaled;
+import ru.yandex.practicum.filmorate.storage.wal.WalRecord;
+import ru.yandex.practicum.filmorate.storage.wal.WalRecord.Operation;
+import ru.yandex.practicum.filmorate.storage.wal.WriteAheadLog;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Хранилище пользователей в памяти для профиля in-memory. Пользователи лежат в упорядоченной по идентификатору
+ * конкурентной карте, дружба — в том же графе, что и у хранилища в базе. Изменения пользователя и его дружбы
+ * выполняются под монитором полосы пользователя: так только один из конкурирующих запросов узнаёт, что дружба
+ * была, а записи в журнале {@link WriteAheadLog} идут в том же порядке, что и изменения.
+ */
 @Slf4j
-@Component
-@Qualifier(value = "InMemoryFilmStorage")
-public class InMemoryUserStorage implements UserStorage {
-    private static Map<Integer, User> users = new HashMap<>();
+@RequiredArgsConstructor
+@Repository
+@Profile("in-memory")
+@Qualifier("InMemoryUserStorage")
+public class InMemoryUserStorage implements UserStorage, Journaled {
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
+    private final FriendGraphIndex friendGraphIndex;
+    private final FriendRecommender friendRecommender;
+    private final WriteAheadLog wal;
+    // Дружба из журнала копится здесь и попадает в граф одним перестроением в recovered().
+    private final AdjacencyChangesCollector recoveredFriends = new AdjacencyChangesCollector();
 
     @Override
     public User addUser(User user) {
-        if (users.containsKey(user.getId())) {
-            log.warn("Попытка добавить пользователя с уже существующим идентификатором");
-            throw new RuntimeException("Пользователь с id = " + user.getId() + " уже существует");
-        }
-        users.put(user.getId(), user);
-        log.debug("Пользователь добавлен в хранилище. {}", user);
-        return user.toBuilder().build();
+        User created = insert(user);
+        wal.sync();
+        log.debug("Пользователь добавлен в хранилище. {}", created);
+        return created;
+    }
+
+    @Override
+    public List<User> addUsers(List<User> users) {
+        List<User> created = users.stream()
+                .map(this::insert)
+                .collect(Collectors.toList());
+        wal.sync();
+        log.debug("Пакетно добавлено пользователей: ({})", created.size());
+        return created;
     }
 
     @Override
     public User updateUser(User user) {
-        if (!users.containsKey(user.getId())) {
-            log.warn("Пользователь с идентификатором {} не существует!", user.getId());
-            throw new NotFoundException("Пользователь с идентификатором " + user.getId() + " не существует!");
+        long sequence;
+        synchronized (locks.get(user.getId())) {
+            if (users.replace(user.getId(), user) == null) {
+                throw userNotFound(user.getId());
+            }
+            sequence = wal.append(wal.json(Operation.USER, user));
         }
-        users.put(user.getId(), user);
+        wal.await(sequence);
         log.debug("Обновлённый пользователь добавлен в хранилище. {}", user);
-        return user.toBuilder().build();
+        return user;
     }
 
     @Override
@@ -44,43 +81,226 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getUsersPage(Integer afterId, Integer limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamUsers(Integer afterId, Consumer<User> action) {
+        users.tailMap(afterId, false).values().forEach(action);
+    }
+
     @Override
     public User getUserById(Integer id) {
-        if (!users.containsKey(id)) {
-            log.warn("Пользователь с идентификатором {} не существует!", id);
-            throw new NotFoundException("Пользователь с идентификатором " + id + " не существует!");
+        User user = users.get(id);
+        if (user == null) {
+            throw userNotFound(id);
         }
-        log.debug("{} {}", users.get(id), InMemoryUserStorage.class);
-        return users.get(id).toBuilder().build();
+        return user;
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Integer> ids) {
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public void deleteStorage() {
         users.clear();
+        friendGraphIndex.clear();
+        friendRecommender.invalidateAll();
+        wal.await(wal.append(WalRecord.of(Operation.CLEAR_USERS, lastId.get())));
     }
 
     @Override
     public boolean findUserById(Integer id) {
-        return false;
+        return users.containsKey(id);
+    }
+
+    @Override
+    public Set<Integer> findUserIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean addFriend(Integer userId, Integer friendId) {
-        return false;
+        requireUsers(userId, friendId);
+        long sequence = 0;
+        synchronized (locks.get(userId)) {
+            if (Arrays.binarySearch(friendGraphIndex.getFriends(userId), friendId) < 0) {
+                friendGraphIndex.addFriend(userId, friendId);
+                friendRecommender.invalidate(userId);
+                sequence = wal.append(WalRecord.of(Operation.FRIEND, userId, friendId));
+            }
+        }
+        wal.await(sequence);
+        return true;
+    }
+
+    @Override
+    public int addFriends(Integer userId, List<Integer> friendIds) {
+        requireUsers(userId);
+        long sequence = 0;
+        synchronized (locks.get(userId)) {
+            for (Integer friendId : friendIds) {
+                if (Arrays.binarySearch(friendGraphIndex.getFriends(userId), friendId) < 0) {
+                    friendGraphIndex.addFriend(userId, friendId);
+                    sequence = wal.append(WalRecord.of(Operation.FRIEND, userId, friendId));
+                }
+            }
+            friendRecommender.invalidate(userId);
+        }
+        wal.await(sequence);
+        log.debug("Пакетно добавлено друзей пользователю {}: ({})", userId, friendIds.size());
+        return friendIds.size();
     }
 
     @Override
     public boolean deleteFriend(Integer userId, Integer friendId) {
+        boolean removed;
+        long sequence = 0;
+        synchronized (locks.get(userId)) {
+            removed = Arrays.binarySearch(friendGraphIndex.getFriends(userId), friendId) >= 0;
+            if (removed) {
+                friendGraphIndex.removeFriend(userId, friendId);
+                friendRecommender.invalidate(userId);
+                sequence = wal.append(WalRecord.of(Operation.UNFRIEND, userId, friendId));
+            }
+        }
+        if (removed) {
+            wal.await(sequence);
+            return true;
+        }
+        requireUsers(userId, friendId);
         return false;
     }
 
     @Override
     public List<User> getFriendsById(Integer userId) {
-        return null;
+        int[] friendIds = friendGraphIndex.getFriends(userId);
+        if (friendIds.length == 0) {
+            requireUsers(userId);
+        }
+        return getUsersByIds(friendIds);
     }
 
     @Override
     public List<User> getMutualFriendsById(Integer userId, Integer otherUserId) {
-        return null;
+        int[] mutualIds = friendGraphIndex.getMutualFriends(userId, otherUserId);
+        if (mutualIds.length == 0) {
+            requireUsers(userId, otherUserId);
+        }
+        return getUsersByIds(mutualIds);
+    }
+
+    @Override
+    public Map<Integer, List<User>> getMutualFriendsByIds(Integer userId, List<Integer> otherUserIds) {
+        requireUsers(userId);
+        otherUserIds.forEach(this::requireUsers);
+        Map<Integer, List<User>> result = new LinkedHashMap<>();
+        for (Integer otherUserId : otherUserIds) {
+            result.put(otherUserId, getUsersByIds(friendGraphIndex.getMutualFriends(userId, otherUserId)));
+        }
+        return result;
+    }
+
+    @Override
+    public List<User> getRecommendations(Integer userId, Integer limit) {
+        int[] recommendedIds = friendRecommender.recommend(userId, limit);
+        if (recommendedIds.length == 0) {
+            requireUsers(userId);
+        }
+        return getUsersByIds(recommendedIds);
+    }
+
+    @Override
+    public void replay(WalRecord record) {
+        switch (record.getOperation()) {
+            case USER:
+                User user = wal.read(record, User.class);
+                users.put(user.getId(), user);
+                lastId.accumulateAndGet(user.getId(), Math::max);
+                break;
+            case FRIEND:
+                recoveredFriends.add(record.getInt(0), record.getInt(1));
+                break;
+            case UNFRIEND:
+                recoveredFriends.remove(record.getInt(0), record.getInt(1));
+                break;
+            case FRIENDS:
+                recoveredFriends.addAll(record.getInt(0), record.getInts(1));
+                break;
+            case CLEAR_USERS:
+                users.clear();
+                recoveredFriends.clear();
+                lastId.set(record.getInt(0));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void recovered() {
+        Map<Integer, int[]> friendsByUserId = recoveredFriends.finish();
+        friendGraphIndex.rebuild(friendsByUserId);
+        friendRecommender.invalidateAll();
+        log.info("Из журнала восстановлено пользователей: ({}), пользователей с друзьями: ({})", users.size(),
+                friendsByUserId.size());
+    }
+
+    @Override
+    public void snapshot(Consumer<WalRecord> out) {
+        out.accept(WalRecord.of(Operation.CLEAR_USERS, lastId.get()));
+        users.values().forEach(user -> out.accept(wal.json(Operation.USER, user)));
+        friendGraphIndex.forEachUser((userId, friendIds) -> {
+            if (friendIds.length > 0) {
+                out.accept(WalRecord.of(Operation.FRIENDS, userId, friendIds));
+            }
+        });
+    }
+
+    /**
+     * Добавляет пользователя и его запись в журнал, не дожидаясь записи журнала на диск.
+     */
+    private User insert(User user) {
+        User created = user.toBuilder().id(lastId.incrementAndGet()).build();
+        synchronized (locks.get(created.getId())) {
+            users.put(created.getId(), created);
+            wal.append(wal.json(Operation.USER, created));
+        }
+        return created;
+    }
+
+    private List<User> getUsersByIds(int[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    private void requireUsers(Integer... ids) {
+        for (Integer id : ids) {
+            if (!users.containsKey(id)) {
+                throw userNotFound(id);
+            }
+        }
+    }
+
+    private static NotFoundException userNotFound(Integer id) {
+        log.warn("Пользователь с идентификатором {} не существует!", id);
+        return new NotFoundException("Пользователь с идентификатором " + id + " не существует!");
     }
 }
@@ -2,146 +2,379 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.AdjacencyListsCollector;
+import ru.yandex.practicum.filmorate.storage.film.FilmDBStorage;
 
-import java.util.List;
-import java.util.Map;
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 
 @Slf4j
 @RequiredArgsConstructor
 @Repository
-@Primary
+@Profile("!in-memory")
 @Qualifier("UserDBStorage")
 public class UserDBStorage implements UserStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String SELECT_USERS = "SELECT id, email, login, name, birthday FROM users";
+    private static final String SELECT_USER_BY_ID = "SELECT id, email, login, name, birthday " +
+            "FROM users " +
+            "WHERE id = ?";
+    private static final String SELECT_USERS_PAGE = "SELECT id, email, login, name, birthday " +
+            "FROM users " +
+            "WHERE id > ? " +
+            "ORDER BY id " +
+            "LIMIT ?";
+    private static final String SELECT_USERS_AFTER = "SELECT id, email, login, name, birthday " +
+            "FROM users " +
+            "WHERE id > ? " +
+            "ORDER BY id";
+    private static final String EXISTS_USER = "SELECT id FROM users WHERE id = ?";
+    private static final String SELECT_USER_IDS = "SELECT id FROM users WHERE id = ANY(?)";
+    private static final String SELECT_USERS_BY_IDS = "SELECT id, email, login, name, birthday " +
+            "FROM users " +
+            "WHERE id = ANY(?) " +
+            "ORDER BY id";
+    private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_USER = "UPDATE users " +
+            "SET email = ?, login = ?, name = ?, birthday = ? " +
+            "WHERE id = ?";
+    private static final String DELETE_USERS = "DELETE FROM users";
+    private static final String MERGE_FRIENDSHIP = "MERGE INTO friendship (user_id, another_user_id) " +
+            "KEY(user_id, another_user_id) " +
+            "VALUES (?, ?)";
+    private static final String DELETE_FRIENDSHIP = "DELETE friendship " +
+            "WHERE user_id = ? AND another_user_id = ?";
+    private static final String SELECT_FRIENDS = "SELECT u.id, u.email, u.login, u.name, u.birthday " +
+            "FROM friendship AS f " +
+            "JOIN users AS u ON f.another_user_id = u.id " +
+            "WHERE user_id = ?";
+    private static final String SELECT_FRIENDSHIPS = "SELECT user_id, another_user_id " +
+            "FROM friendship " +
+            "ORDER BY user_id";
+
     private final JdbcTemplate jdbcTemplate;
-    private String sql;
+    private final FriendGraphIndex friendGraphIndex;
+    private final FriendRecommender friendRecommender;
+    // Хранилище фильмов само зависит от хранилища пользователей, поэтому берётся лениво.
+    private final ObjectProvider<FilmDBStorage> filmStorage;
+
+    @PostConstruct
+    public void loadFriendGraph() {
+        AdjacencyListsCollector collector = new AdjacencyListsCollector("user_id", "another_user_id");
+        jdbcTemplate.query(SELECT_FRIENDSHIPS, collector);
+        Map<Integer, int[]> friends = collector.finish();
+        friendGraphIndex.rebuild(friends);
+        friendRecommender.invalidateAll();
+        log.debug("Граф дружбы построен. Пользователей с друзьями: ({})", friends.size());
+    }
 
     @Override
     public User addUser(User user) {
-        SimpleJdbcInsert insert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("users")
-                .usingGeneratedKeyColumns("id");
-        int id = insert.executeAndReturnKey(userToMap(user)).intValue();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_USER, new String[]{"id"});
+            ps.setString(1, user.getEmail());
+            ps.setString(2, user.getLogin());
+            ps.setString(3, user.getName());
+            ps.setObject(4, user.getBirthday());
+            return ps;
+        }, keyHolder);
+        int id = Objects.requireNonNull(keyHolder.getKey()).intValue();
         return user.toBuilder().id(id).build();
     }
 
     @Override
-    public User updateUser(User user) {
-        if (!findUserById(user.getId())) {
-            log.warn("Пользователь с идентификатором {} не существует!", user.getId());
-            throw new NotFoundException("Пользователь с идентификатором " + user.getId() + " не существует!");
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        List<Integer> ids = jdbcTemplate.execute((ConnectionCallback<List<Integer>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_USER, new String[]{"id"})) {
+                for (User user : users) {
+                    ps.setString(1, user.getEmail());
+                    ps.setString(2, user.getLogin());
+                    ps.setString(3, user.getName());
+                    ps.setObject(4, user.getBirthday());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Integer> generatedIds = new ArrayList<>(users.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generatedIds.add(keys.getInt(1));
+                    }
+                }
+                return generatedIds;
+            }
+        });
+        List<User> created = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            created.add(users.get(i).toBuilder().id(ids.get(i)).build());
         }
-        sql = "UPDATE users " +
-                "SET email = ?, login = ?, name = ?, birthday = ? " +
-                "WHERE id = ?";
-        if (jdbcTemplate.update(sql, user.getEmail(), user.getLogin(), user.getName(),
+        log.debug("Пакетно добавлено пользователей: ({})", created.size());
+        return created;
+    }
+
+    @Override
+    public User updateUser(User user) {
+        if (jdbcTemplate.update(UPDATE_USER, user.getEmail(), user.getLogin(), user.getName(),
                 user.getBirthday(), user.getId()) == 0) {
-            log.warn("Пользователь с идентификатором {} не существует!", user.getId());
-            throw new NotFoundException("Пользователь с идентификатором " + user.getId() + " не существует!");
+            throw userNotFound(user.getId());
         }
         return user;
     }
 
     @Override
     public List<User> getAllUsers() {
-        sql = "SELECT id, email, login, name, birthday FROM users";
-        return jdbcTemplate.query(sql, getUserMapper());
+        return jdbcTemplate.query(SELECT_USERS, getUserMapper());
+    }
+
+    @Override
+    public List<User> getUsersPage(Integer afterId, Integer limit) {
+        return jdbcTemplate.query(SELECT_USERS_PAGE, getUserMapper(), afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(Integer afterId, Consumer<User> action) {
+        RowMapper<User> userMapper = getUserMapper();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_USERS_AFTER);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setInt(1, afterId);
+            return ps;
+        }, rs -> {
+            action.accept(userMapper.mapRow(rs, rs.getRow()));
+        });
     }
 
     @Override
     public User getUserById(Integer id) {
-        if (!findUserById(id)) {
-            log.warn("Пользователь с идентификатором {} не существует!", id);
-            throw new NotFoundException("Пользователь с идентификатором " + id + " не существует!");
+        try {
+            return jdbcTemplate.queryForObject(SELECT_USER_BY_ID, getUserMapper(), id);
+        } catch (EmptyResultDataAccessException e) {
+            throw userNotFound(id);
         }
-        sql = "SELECT id, email, login, name, birthday " +
-                "FROM users " +
-                "WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, getUserMapper(), id);
     }
 
     @Override
+    public List<User> getUsersByIds(List<Integer> ids) {
+        Map<Integer, User> users = new HashMap<>();
+        getUsersByIds(ids.stream().mapToInt(Integer::intValue).toArray())
+                .forEach(user -> users.put(user.getId(), user));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Удаляет пользователей вместе с их дружбой и лайками; счётчики лайков фильмов обнуляются, а индексы лайков
+     * и рейтинг популярных фильмов очищаются через хранилище фильмов. Сами фильмы остаются.
+     */
+    @Override
+    @Transactional
     public void deleteStorage() {
-        sql = "TRUNCATE TABLE users";
-        jdbcTemplate.update(sql);
+        filmStorage.ifAvailable(FilmDBStorage::deleteLikes);
+        jdbcTemplate.update(DELETE_USERS);
+        friendGraphIndex.clear();
+        friendRecommender.invalidateAll();
     }
 
     @Override
     public boolean findUserById(Integer id) {
-        sql = "SELECT id FROM users WHERE id = ?";
-        SqlRowSet userRaws = jdbcTemplate.queryForRowSet(sql, id);
+        SqlRowSet userRaws = jdbcTemplate.queryForRowSet(EXISTS_USER, id);
         return userRaws.next();
     }
 
     @Override
-    public boolean addFriend(Integer userId, Integer friendId) {
-        if (!findUserById(userId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", userId);
-            throw new NotFoundException("Пользователь с идентификатором " + userId + " не существует!");
+    public Set<Integer> findUserIds(Collection<Integer> ids) {
+        Set<Integer> found = new HashSet<>();
+        if (ids.isEmpty()) {
+            return found;
         }
-        if (!findUserById(friendId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", friendId);
-            throw new NotFoundException("Пользователь с идентификатором " + friendId + " не существует!");
+        jdbcTemplate.query(SELECT_USER_IDS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", ids.toArray())),
+                rs -> {
+                    found.add(rs.getInt("id"));
+                });
+        return found;
+    }
+
+    @Override
+    public boolean addFriend(Integer userId, Integer friendId) {
+        try {
+            boolean added = jdbcTemplate.update(MERGE_FRIENDSHIP, userId, friendId) > 0;
+            afterCommit(() -> {
+                friendGraphIndex.addFriend(userId, friendId);
+                friendRecommender.invalidate(userId);
+            });
+            return added;
+        } catch (DataIntegrityViolationException e) {
+            // Внешний ключ не говорит, какого из пользователей нет, поэтому уточняем только при ошибке.
+            requireUsers(userId, friendId);
+            throw e;
         }
-        sql = "MERGE INTO friendship (user_id, another_user_id)" +
-                "KEY(user_id, another_user_id)" +
-                "VALUES (?, ?)";
-        return jdbcTemplate.update(sql, userId, friendId) > 0;
+    }
+
+    @Override
+    @Transactional
+    public int addFriends(Integer userId, List<Integer> friendIds) {
+        int[] merged = jdbcTemplate.batchUpdate(MERGE_FRIENDSHIP, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, userId);
+                ps.setInt(2, friendIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return friendIds.size();
+            }
+        });
+        afterCommit(() -> {
+            friendIds.forEach(friendId -> friendGraphIndex.addFriend(userId, friendId));
+            friendRecommender.invalidate(userId);
+        });
+        log.debug("Пакетно добавлено друзей пользователю {}: ({})", userId, merged.length);
+        return merged.length;
     }
 
     @Override
     public boolean deleteFriend(Integer userId, Integer friendId) {
-        if (!findUserById(userId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", userId);
-            throw new NotFoundException("Пользователь с идентификатором " + userId + " не существует!");
-        }
-        if (!findUserById(friendId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", friendId);
-            throw new NotFoundException("Пользователь с идентификатором " + friendId + " не существует!");
+        if (jdbcTemplate.update(DELETE_FRIENDSHIP, userId, friendId) > 0) {
+            afterCommit(() -> {
+                friendGraphIndex.removeFriend(userId, friendId);
+                friendRecommender.invalidate(userId);
+            });
+            return true;
         }
-        sql = "DELETE friendship " +
-                "WHERE user_id = ? AND another_user_id = ?";
-        return jdbcTemplate.update(sql, userId, friendId) > 0;
+        requireUsers(userId, friendId);
+        return false;
     }
 
     @Override
     public List<User> getFriendsById(Integer userId) {
-        if (!findUserById(userId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", userId);
-            throw new NotFoundException("Пользователь с идентификатором " + userId + " не существует!");
+        List<User> friends = jdbcTemplate.query(SELECT_FRIENDS, getUserMapper(), userId);
+        if (friends.isEmpty()) {
+            requireUsers(userId);
         }
-        sql = "SELECT u.id, u.email, u.login, u.name, u.birthday " +
-                "FROM friendship AS f " +
-                "JOIN users AS u ON f.another_user_id = u.id " +
-                "WHERE user_id = ?";
-        return jdbcTemplate.query(sql, getUserMapper(), userId);
+        return friends;
     }
 
     @Override
     public List<User> getMutualFriendsById(Integer userId, Integer otherUserId) {
-        if (!findUserById(userId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", userId);
-            throw new NotFoundException("Пользователь с идентификатором " + userId + " не существует!");
+        int[] mutualIds = friendGraphIndex.getMutualFriends(userId, otherUserId);
+        if (mutualIds.length == 0) {
+            requireUsers(userId, otherUserId);
+            return new ArrayList<>();
+        }
+        return getUsersByIds(mutualIds);
+    }
+
+    @Override
+    public Map<Integer, List<User>> getMutualFriendsByIds(Integer userId, List<Integer> otherUserIds) {
+        List<Integer> allIds = new ArrayList<>(otherUserIds.size() + 1);
+        allIds.add(userId);
+        allIds.addAll(otherUserIds);
+        Set<Integer> existing = findUserIds(allIds);
+        for (Integer id : allIds) {
+            if (!existing.contains(id)) {
+                throw userNotFound(id);
+            }
+        }
+        Map<Integer, int[]> mutualIds = new LinkedHashMap<>();
+        Set<Integer> friendIds = new HashSet<>();
+        for (Integer otherUserId : otherUserIds) {
+            int[] ids = friendGraphIndex.getMutualFriends(userId, otherUserId);
+            mutualIds.put(otherUserId, ids);
+            Arrays.stream(ids).forEach(friendIds::add);
+        }
+        Map<Integer, User> friends = new HashMap<>();
+        getUsersByIds(friendIds.stream().mapToInt(Integer::intValue).toArray())
+                .forEach(user -> friends.put(user.getId(), user));
+        Map<Integer, List<User>> result = new LinkedHashMap<>();
+        mutualIds.forEach((otherUserId, ids) -> result.put(otherUserId, Arrays.stream(ids)
+                .mapToObj(friends::get)
+                .collect(Collectors.toList())));
+        return result;
+    }
+
+    @Override
+    public List<User> getRecommendations(Integer userId, Integer limit) {
+        int[] recommendedIds = friendRecommender.recommend(userId, limit);
+        if (recommendedIds.length == 0) {
+            requireUsers(userId);
+            return new ArrayList<>();
         }
-        if (!findUserById(otherUserId)) {
-            log.warn("Пользователь с идентификатором {} не существует!", otherUserId);
-            throw new NotFoundException("Пользователь с идентификатором " + otherUserId + " не существует!");
+        Map<Integer, User> users = new HashMap<>();
+        getUsersByIds(recommendedIds).forEach(user -> users.put(user.getId(), user));
+        return Arrays.stream(recommendedIds)
+                .mapToObj(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<User> getUsersByIds(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Object[] boxedIds = Arrays.stream(ids).boxed().toArray();
+        return jdbcTemplate.query(SELECT_USERS_BY_IDS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("INTEGER", boxedIds)),
+                getUserMapper());
+    }
+
+    /**
+     * Медленный путь для случаев, когда основной запрос не изменил или не вернул ни одной строки:
+     * только тогда выясняем, существуют ли пользователи, чтобы вернуть прежнюю ошибку 404.
+     */
+    private void requireUsers(Integer... ids) {
+        for (Integer id : ids) {
+            if (!findUserById(id)) {
+                throw userNotFound(id);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
-        sql = "SELECT u.id, u.email, u.login, u.name, u.birthday " +
-                "FROM friendship f1 " +
-                "JOIN friendship f2 ON f1.another_user_id = f2.another_user_id " +
-                "JOIN users AS u ON f1.another_user_id = u.id " +
-                "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sql, getUserMapper(), userId, otherUserId);
+    }
+
+    private static NotFoundException userNotFound(Integer id) {
+        log.warn("Пользователь с идентификатором {} не существует!", id);
+        return new NotFoundException("Пользователь с идентификатором " + id + " не существует!");
     }
 
     private static RowMapper<User> getUserMapper() {
@@ -153,12 +386,4 @@ public class UserDBStorage implements UserStorage {
                 .birthday(rs.getDate("birthday").toLocalDate())
                 .build();
     }
-
-    private static Map<String, Object> userToMap(User user) {
-        return Map.of(
-                "email", user.getEmail(),
-                "login", user.getLogin(),
-                "name", user.getName(),
-                "birthday", user.getBirthday());
-    }
 }
@@ -3,26 +3,49 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User addUser(User user);
 
+    List<User> addUsers(List<User> users);
+
     User updateUser(User user);
 
     List<User> getAllUsers();
 
+    List<User> getUsersPage(Integer afterId, Integer limit);
+
+    void streamUsers(Integer afterId, Consumer<User> action);
+
     User getUserById(Integer id);
 
+    /**
+     * Существующие пользователи из списка в порядке идентификаторов в нём; несуществующие пропускаются.
+     */
+    List<User> getUsersByIds(List<Integer> ids);
+
     void deleteStorage();
 
     boolean findUserById(Integer id);
 
+    Set<Integer> findUserIds(Collection<Integer> ids);
+
     boolean addFriend(Integer userId, Integer friendId);
 
+    int addFriends(Integer userId, List<Integer> friendIds);
+
     boolean deleteFriend(Integer userId, Integer friendId);
 
     List<User> getFriendsById(Integer userId);
 
     List<User> getMutualFriendsById(Integer userId, Integer otherUserId);
+
+    Map<Integer, List<User>> getMutualFriendsByIds(Integer userId, List<Integer> otherUserIds);
+
+    List<User> getRecommendations(Integer userId, Integer limit);
 }
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import java.util.function.Consumer;
+
+/**
+ * Хранилище в памяти, изменения которого пишутся в {@link WriteAheadLog} и восстанавливаются из него при старте.
+ */
+public interface Journaled {
+    /**
+     * Применяет запись из снимка или журнала при восстановлении, без проверок и без записи в журнал.
+     * Записи других хранилищ пропускаются.
+     */
+    void replay(WalRecord record);
+
+    /**
+     * Вызывается после воспроизведения всех записей, чтобы построить индексы по восстановленным данным.
+     */
+    void recovered();
+
+    /**
+     * Выдаёт записи, из которых воспроизведением восстанавливается текущее состояние хранилища.
+     * Вызывается параллельно с изменениями хранилища.
+     */
+    void snapshot(Consumer<WalRecord> out);
+}
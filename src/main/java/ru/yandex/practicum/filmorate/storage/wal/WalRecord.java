@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Запись журнала: операция над хранилищем в памяти и её данные. Записи идемпотентны — повторное применение
+ * записи не меняет результат, поэтому журнал можно воспроизводить поверх снимка, снятого во время записи.
+ */
+public final class WalRecord {
+    public enum Operation {
+        /** Фильм целиком в JSON: добавление или обновление. */
+        FILM,
+        /** Пользователь целиком в JSON: добавление или обновление. */
+        USER,
+        /** Лайк: идентификатор фильма и пользователя. */
+        LIKE,
+        UNLIKE,
+        /** Дружба: идентификатор пользователя и друга. */
+        FRIEND,
+        UNFRIEND,
+        /** Удаление всех фильмов с лайками; хранит последний выданный идентификатор фильма. */
+        CLEAR_FILMS,
+        /** Удаление всех пользователей с дружбой; хранит последний выданный идентификатор пользователя. */
+        CLEAR_USERS,
+        /** Только в снимках: идентификатор пользователя и все понравившиеся ему фильмы. */
+        LIKES,
+        /** Только в снимках: идентификатор пользователя и все его друзья. */
+        FRIENDS
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final Operation operation;
+    private final byte[] payload;
+
+    WalRecord(Operation operation, byte[] payload) {
+        this.operation = operation;
+        this.payload = payload;
+    }
+
+    public static WalRecord of(Operation operation, int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES);
+        buffer.asIntBuffer().put(values);
+        return new WalRecord(operation, buffer.array());
+    }
+
+    public static WalRecord of(Operation operation, int ownerId, int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate((values.length + 1) * Integer.BYTES);
+        buffer.asIntBuffer().put(ownerId).put(values);
+        return new WalRecord(operation, buffer.array());
+    }
+
+    static WalRecord decode(byte operation, byte[] payload) {
+        if (operation < 0 || operation >= OPERATIONS.length) {
+            throw new IllegalArgumentException("Неизвестная операция журнала: " + operation);
+        }
+        return new WalRecord(OPERATIONS[operation], payload);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public int getInt(int index) {
+        return ByteBuffer.wrap(payload).getInt(index * Integer.BYTES);
+    }
+
+    /**
+     * Значения, начиная с позиции from.
+     */
+    public int[] getInts(int from) {
+        int[] values = new int[payload.length / Integer.BYTES - from];
+        ByteBuffer.wrap(payload, from * Integer.BYTES, values.length * Integer.BYTES).asIntBuffer().get(values);
+        return values;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+}
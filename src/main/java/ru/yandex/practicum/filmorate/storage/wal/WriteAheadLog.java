@@ -0,0 +1,484 @@
+package ru.yandex.practicum.filmorate.storage.wal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи для хранилищ в памяти. Каждое изменение дописывается в конец текущего сегмента
+ * журнала кадром «длина, CRC32C, операция, данные», и запрос подтверждается только после fsync сегмента.
+ * Кадры всех потоков копятся в общем буфере, а отдельный поток записывает накопленное одним write и одним fsync
+ * (групповая фиксация), поэтому при параллельной нагрузке fsync приходится на много изменений сразу.
+ * Когда сегмент дорастает до {@code snapshot-after}, начинается новый сегмент, а в фоне снимается снимок
+ * состояния хранилищ, после чего старые сегменты удаляются. При старте загружается последний снимок
+ * и воспроизводятся сегменты после него; оборванный при сбое хвост последнего сегмента отбрасывается.
+ */
+@Slf4j
+@Component
+@Profile("in-memory")
+public class WriteAheadLog implements SmartInitializingSingleton {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long snapshotAfter;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<Journaled> journaled;
+    private final Timer fsyncTimer;
+    private final DistributionSummary batchRecords;
+    // Буфер кадров, ещё не переданных потоку записи, и номер последнего добавленного кадра.
+    private final Object appendLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(IO_BUFFER_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(IO_BUFFER_BYTES);
+    private long appended;
+    private long pendingRecords;
+    private boolean flushRequested;
+    private boolean running;
+    // Номер последнего кадра, записанного на диск, и ошибка записи, после которой журнал не принимает изменений.
+    private final Object durableLock = new Object();
+    private long durable;
+    private IOException failure;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private List<Journaled> participants;
+    private FileChannel segment;
+    private long segmentIndex;
+    private Thread writer;
+    private ExecutorService snapshots;
+
+    public WriteAheadLog(@Value("${filmorate.storage.wal.enabled}") boolean enabled,
+                         @Value("${filmorate.storage.wal.directory}") String directory,
+                         @Value("${filmorate.storage.wal.snapshot-after}") DataSize snapshotAfter,
+                         ObjectMapper objectMapper,
+                         ObjectProvider<Journaled> journaled,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.snapshotAfter = snapshotAfter.toBytes();
+        this.objectMapper = objectMapper;
+        this.journaled = journaled;
+        this.fsyncTimer = Timer.builder("filmorate.wal.fsync")
+                .description("Запись накопленных кадров журнала и fsync сегмента")
+                .register(meterRegistry);
+        this.batchRecords = DistributionSummary.builder("filmorate.wal.batch.records")
+                .description("Количество изменений, зафиксированных одним fsync")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Восстанавливает хранилища из снимка и журнала, когда все они созданы, но ещё до приёма запросов.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        participants = journaled.orderedStream().collect(Collectors.toList());
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилище из журнала " + directory, e);
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        snapshots = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Добавляет запись в журнал и возвращает её номер для {@link #await(long)}. Чтобы порядок записей в журнале
+     * совпадал с порядком изменений, вызывается под той же блокировкой, что и само изменение.
+     * Если журнал выключен, ничего не делает и возвращает 0.
+     */
+    public long append(WalRecord record) {
+        if (!enabled) {
+            return 0;
+        }
+        byte[] frame = frame(record);
+        synchronized (appendLock) {
+            if (!running) {
+                throw new IllegalStateException("Журнал хранилища закрыт");
+            }
+            if (pending.remaining() < frame.length) {
+                int capacity = Math.max(pending.capacity() * 2, pending.position() + frame.length);
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.put(frame);
+            pendingRecords++;
+            // Поток записи будится ожидающим в await() или заполненным буфером, а не каждой записью:
+            // иначе пакет изменений из одного потока уходил бы на диск множеством мелких fsync.
+            if (pending.position() >= IO_BUFFER_BYTES) {
+                appendLock.notify();
+            }
+            return ++appended;
+        }
+    }
+
+    /**
+     * Ждёт, пока запись с номером sequence и все записи до неё окажутся на диске.
+     */
+    public void await(long sequence) {
+        if (sequence == 0) {
+            return;
+        }
+        synchronized (durableLock) {
+            if (durable >= sequence) {
+                return;
+            }
+        }
+        synchronized (appendLock) {
+            flushRequested = true;
+            appendLock.notify();
+        }
+        synchronized (durableLock) {
+            while (durable < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Не удалось записать изменение в журнал хранилища", failure);
+                }
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ждёт, пока на диске окажутся все записи, добавленные в журнал к этому моменту. Нужен пакетным изменениям,
+     * которые дописывают в журнал много записей и подтверждаются одним ожиданием.
+     */
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        long sequence;
+        synchronized (appendLock) {
+            sequence = appended;
+        }
+        await(sequence);
+    }
+
+    public WalRecord json(WalRecord.Operation operation, Object value) {
+        try {
+            return new WalRecord(operation, objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public <T> T read(WalRecord record, Class<T> type) {
+        try {
+            return objectMapper.readValue(record.getPayload(), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Дописывает на диск все принятые изменения и закрывает журнал.
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        synchronized (appendLock) {
+            running = false;
+            appendLock.notify();
+        }
+        writer.join();
+        snapshots.shutdown();
+        if (!snapshots.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.warn("Снимок хранилища не записан за минуту");
+        }
+        segment.close();
+        writer = null;
+        log.debug("Журнал хранилища закрыт, записей: ({})", durable);
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        for (Path temporary : list(SNAPSHOT_PREFIX, TEMPORARY_SUFFIX)) {
+            Files.delete(temporary);
+        }
+        long snapshotIndex = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream()
+                .mapToLong(path -> index(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+                .max()
+                .orElse(0);
+        long records = 0;
+        if (snapshotIndex > 0) {
+            records += replay(path(SNAPSHOT_PREFIX, snapshotIndex, SNAPSHOT_SUFFIX), false);
+        }
+        List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream()
+                .map(path -> index(path, SEGMENT_PREFIX, SEGMENT_SUFFIX))
+                .filter(index -> index >= snapshotIndex)
+                .sorted()
+                .collect(Collectors.toList());
+        long tailBytes = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = path(SEGMENT_PREFIX, segments.get(i), SEGMENT_SUFFIX);
+            records += replay(path, i == segments.size() - 1);
+            tailBytes += Files.size(path);
+        }
+        participants.forEach(Journaled::recovered);
+        segmentIndex = Math.max(snapshotIndex, segments.isEmpty() ? 0 : segments.get(segments.size() - 1)) + 1;
+        segment = openSegment(segmentIndex);
+        log.info("Хранилище восстановлено из журнала {}: снимок {}, сегментов ({}), записей ({}) за {} мс",
+                directory, snapshotIndex, segments.size(), records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        if (tailBytes >= snapshotAfter) {
+            snapshotRunning.set(true);
+            snapshot(segmentIndex);
+        }
+    }
+
+    /**
+     * Применяет к хранилищам все целые записи файла и возвращает их количество. Повреждённый или оборванный
+     * хвост допустим только в последнем сегменте: это изменения, fsync которых не успел завершиться,
+     * и они отрезаются от файла.
+     */
+    private long replay(Path path, boolean tail) throws IOException {
+        long records = 0;
+        long valid = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel),
+                    IO_BUFFER_BYTES));
+            CRC32C crc = new CRC32C();
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 1 || length > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                WalRecord record = WalRecord.decode(body[0], Arrays.copyOfRange(body, 1, body.length));
+                for (Journaled participant : participants) {
+                    participant.replay(record);
+                }
+                valid += HEADER_BYTES + body.length;
+                records++;
+            }
+        }
+        long size = Files.size(path);
+        if (valid < size) {
+            if (!tail) {
+                throw new IOException("Файл журнала " + path + " повреждён в позиции " + valid);
+            }
+            log.warn("Отброшен оборванный хвост журнала {}: {} байт после позиции {}", path, size - valid, valid);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long sequence;
+            long records;
+            synchronized (appendLock) {
+                while (running && (pending.position() == 0
+                        || !flushRequested && pending.position() < IO_BUFFER_BYTES)) {
+                    try {
+                        appendLock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                sequence = appended;
+                records = pendingRecords;
+                pendingRecords = 0;
+                flushRequested = false;
+            }
+            try {
+                long started = System.nanoTime();
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    segment.write(batch);
+                }
+                segment.force(false);
+                fsyncTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                batchRecords.record(records);
+                if (segment.size() >= snapshotAfter && snapshotRunning.compareAndSet(false, true)) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                log.error("Не удалось записать журнал хранилища, изменения больше не принимаются: {}", e.getMessage());
+                synchronized (durableLock) {
+                    failure = e;
+                    durableLock.notifyAll();
+                }
+                synchronized (appendLock) {
+                    running = false;
+                }
+                return;
+            }
+            batch.clear();
+            synchronized (appendLock) {
+                spare = batch;
+            }
+            synchronized (durableLock) {
+                durable = sequence;
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Начинает новый сегмент и снимает снимок в фоне. Все изменения из закрытых сегментов к этому моменту
+     * уже применены к хранилищам, поэтому снимок вместе с новым сегментом заменяет их.
+     */
+    private void rotate() throws IOException {
+        segment.close();
+        segmentIndex++;
+        segment = openSegment(segmentIndex);
+        long index = segmentIndex;
+        snapshots.execute(() -> snapshot(index));
+    }
+
+    private void snapshot(long index) {
+        long started = System.nanoTime();
+        Path temporary = path(SNAPSHOT_PREFIX, index, TEMPORARY_SUFFIX);
+        try {
+            long[] records = new long[1];
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_BYTES);
+                Consumer<WalRecord> writer = record -> {
+                    try {
+                        out.write(frame(record));
+                        records[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                participants.forEach(participant -> participant.snapshot(writer));
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, path(SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (index(path, SEGMENT_PREFIX, SEGMENT_SUFFIX) < index) {
+                    Files.delete(path);
+                }
+            }
+            for (Path path : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (index(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < index) {
+                    Files.delete(path);
+                }
+            }
+            log.info("Снимок хранилища {} записан: записей ({}) за {} мс", index, records[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Не удалось записать снимок хранилища {}: {}", index, e.getMessage());
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    private static byte[] frame(WalRecord record) {
+        byte[] payload = record.getPayload();
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 1 + payload.length);
+        frame.putInt(1 + payload.length);
+        frame.putInt(0);
+        frame.put((byte) record.getOperation().ordinal());
+        frame.put(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), HEADER_BYTES, 1 + payload.length);
+        frame.putInt(Integer.BYTES, (int) crc.getValue());
+        return frame.array();
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        return FileChannel.open(path(SEGMENT_PREFIX, index, SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private Path path(String prefix, long index, String suffix) {
+        return directory.resolve(String.format("%s%016d%s", prefix, index, suffix));
+    }
+
+    private static long index(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+}
@@ -28,7 +28,8 @@ CREATE TABLE IF NOT EXISTS films
     description  VARCHAR(200) NOT NULL,
     release_date DATE,
     duration     INTEGER CHECK (duration > 0),
-    mpa_id       INTEGER REFERENCES mpa (id)
+    mpa_id       INTEGER REFERENCES mpa (id),
+    like_count   INTEGER DEFAULT 0 NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS likes
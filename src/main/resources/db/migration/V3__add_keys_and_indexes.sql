@@ -0,0 +1,28 @@
+-- Базы, созданные до появления счётчика лайков, получают его здесь
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INTEGER DEFAULT 0 NOT NULL;
+
+-- Повторяющиеся лайки и жанры удаляются, чтобы можно было добавить составные первичные ключи
+DELETE FROM likes AS l
+WHERE EXISTS (SELECT 1
+              FROM likes AS d
+              WHERE d.film_id = l.film_id
+                AND d.user_id = l.user_id
+                AND d._ROWID_ < l._ROWID_);
+
+DELETE FROM film_genre AS g
+WHERE EXISTS (SELECT 1
+              FROM film_genre AS d
+              WHERE d.film_id = g.film_id
+                AND d.genre_id = g.genre_id
+                AND d._ROWID_ < g._ROWID_);
+
+ALTER TABLE likes ADD CONSTRAINT likes_pk PRIMARY KEY (film_id, user_id);
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id);
+
+-- Обратные выборки: лайки пользователя и пользователи, добавившие пользователя в друзья
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friendship_another_user_id_idx ON friendship (another_user_id, user_id);
+
+-- Счётчик лайков больше не пересчитывается при каждом запуске, поэтому пересчитывается один раз здесь
+UPDATE films AS f
+SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id);
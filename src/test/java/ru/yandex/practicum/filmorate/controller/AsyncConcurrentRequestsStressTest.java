@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Тот же стресс-тест, но обработчики выполняются в пуле потоков режима async.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "filmorate.execution.mode=async")
+@AutoConfigureTestDatabase
+@Import(AsyncDispatchCounter.class)
+public class AsyncConcurrentRequestsStressTest extends ConcurrentRequestsStressTest {
+    private final TestRestTemplate restTemplate;
+    private final AsyncDispatchCounter asyncDispatches;
+
+    @Autowired
+    public AsyncConcurrentRequestsStressTest(TestRestTemplate restTemplate, AsyncDispatchCounter asyncDispatches) {
+        super(restTemplate);
+        this.restTemplate = restTemplate;
+        this.asyncDispatches = asyncDispatches;
+    }
+
+    @Test
+    void asyncErrorsKeepTheirStatus() {
+        ResponseEntity<Map> response = restTemplate.getForEntity("/films/999999", Map.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode(), "Неверный код ответа для ошибки");
+        assertNotNull(response.getBody());
+        assertEquals("Фильм с идентификатором 999999 не существует!", response.getBody().get("description"),
+                "Неверное описание ошибки");
+    }
+
+    @Test
+    void notModifiedResponseSurvivesAsyncDispatch() {
+        int dispatches = asyncDispatches.get();
+        ResponseEntity<String> response = restTemplate.getForEntity("/films/popular", String.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(response.getHeaders().getETag());
+
+        ResponseEntity<String> cached = restTemplate.exchange("/films/popular", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, cached.getStatusCode());
+        assertNull(cached.getBody());
+        assertEquals(dispatches + 2, asyncDispatches.get(), "Обработчики должны выполняться в пуле запросов");
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Считает повторные диспетчеризации запросов после асинхронной обработки.
+ */
+@TestConfiguration
+public class AsyncDispatchCounter {
+    private final AtomicInteger dispatches = new AtomicInteger();
+
+    @Bean
+    FilterRegistrationBean<Filter> asyncDispatchCounterFilter() {
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            if (request.getDispatcherType() == DispatcherType.ASYNC) {
+                dispatches.incrementAndGet();
+            }
+            chain.doFilter(request, response);
+        });
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+
+    int get() {
+        return dispatches.get();
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BatchImportTest {
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    void importReportsFailuresPerItem() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add(User.builder()
+                    .email("batch" + i + "@mail.ru")
+                    .login("batch" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        users.add(users.get(0).toBuilder().login("other").build());
+        users.add(User.builder().email("неправильная почта").login("login").build());
+
+        BatchResult userResult = userService.createUsers(users);
+
+        assertEquals(30, userResult.getSucceeded(), "Неверное количество созданных пользователей");
+        assertEquals(List.of(30, 31), failedIndexes(userResult), "Неверно определены ошибочные пользователи");
+        List<Integer> userIds = userResult.getIds();
+        assertEquals("batch0", userService.getUserById(Optional.of(userIds.get(0))).getName(),
+                "Пустое имя пользователя должно заменяться логином");
+
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            films.add(Film.builder()
+                    .name("Пакетный фильм " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(100)
+                    .mpa(MPA.builder().id(1).build())
+                    .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build()))
+                    .build());
+        }
+        films.add(films.get(0).toBuilder().mpa(MPA.builder().id(999).build()).build());
+
+        BatchResult filmResult = filmService.addFilms(films);
+
+        assertEquals(50, filmResult.getSucceeded(), "Неверное количество добавленных фильмов");
+        assertEquals(List.of(50), failedIndexes(filmResult), "Неверно определены ошибочные фильмы");
+        List<Integer> filmIds = filmResult.getIds();
+        assertEquals(List.of(1, 2), filmService.getFilmById(Optional.of(filmIds.get(0))).getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()), "Жанры фильма добавлены некорректно");
+        assertEquals(filmIds.get(4), filmService.searchFilms("пакетный фильм 4", null, 10).get(0).getId(),
+                "Точное совпадение должно быть выше совпадения по префиксу");
+        filmService.updateFilm(filmService.getFilmById(Optional.of(filmIds.get(4))).toBuilder()
+                .name("Переименованный фильм")
+                .build());
+        assertEquals(List.of(filmIds.get(4)), filmIds(filmService.searchFilms("переименов", List.of("title"), 10)),
+                "Поиск должен учитывать обновление фильма");
+
+        List<Like> likes = new ArrayList<>();
+        for (int film = 0; film < filmIds.size(); film++) {
+            for (int user = 0; user <= film % userIds.size(); user++) {
+                likes.add(Like.builder().filmId(filmIds.get(film)).userId(userIds.get(user)).build());
+            }
+        }
+        int validLikes = likes.size();
+        likes.add(Like.builder().filmId(filmIds.get(0)).userId(userIds.get(0)).build());
+        likes.add(Like.builder().filmId(-1).userId(userIds.get(0)).build());
+
+        BatchResult likeResult = filmService.addLikes(likes);
+
+        assertEquals(validLikes + 1, likeResult.getSucceeded(), "Повторный лайк не должен быть ошибкой");
+        assertEquals(List.of(validLikes + 1), failedIndexes(likeResult), "Неверно определены ошибочные лайки");
+        List<Integer> popular = filmService.getFilmsByCount(1000, null, null, null).stream()
+                .map(Film::getId)
+                .filter(filmIds::contains)
+                .limit(2)
+                .collect(Collectors.toList());
+        assertEquals(List.of(filmIds.get(29), filmIds.get(28)), popular,
+                "Рейтинг должен учитывать пакетно добавленные лайки");
+
+        Optional<Integer> lastUser = Optional.of(userIds.get(29));
+        assertEquals(List.of(filmIds.get(28), filmIds.get(27)), filmIds(filmService.getRecommendations(lastUser, 2)),
+                "Рекомендации должны учитывать лайки похожих пользователей");
+        filmService.deleteLike(Optional.of(filmIds.get(29)), lastUser);
+        assertEquals(List.of(), filmService.getRecommendations(lastUser, 2), "Без лайков рекомендаций быть не должно");
+        filmService.addLike(Optional.of(filmIds.get(0)), lastUser);
+        assertEquals(List.of(filmIds.get(1), filmIds.get(2)), filmIds(filmService.getRecommendations(lastUser, 2)),
+                "Рекомендации должны учитывать новые лайки");
+
+        BatchResult friendResult = userService.addFriends(Optional.of(userIds.get(0)),
+                List.of(userIds.get(1), userIds.get(2), 0));
+
+        assertEquals(2, friendResult.getSucceeded(), "Неверное количество добавленных друзей");
+        assertEquals(2, userService.getFriendsById(Optional.of(userIds.get(0))).size(),
+                "Друзья добавлены некорректно");
+
+        userService.addFriends(Optional.of(userIds.get(3)), List.of(userIds.get(2), userIds.get(1), userIds.get(4)));
+        Map<Integer, List<User>> mutual = userService.getMutualFriendsByIds(Optional.of(userIds.get(0)),
+                List.of(userIds.get(3), userIds.get(5)));
+
+        assertEquals(List.of(userIds.get(1), userIds.get(2)), mutual.get(userIds.get(3)).stream()
+                .map(User::getId)
+                .collect(Collectors.toList()), "Неверные общие друзья");
+        assertEquals(List.of(), mutual.get(userIds.get(5)), "Общих друзей быть не должно");
+    }
+
+    private static List<Integer> filmIds(List<Film> films) {
+        return films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Integer> failedIndexes(BatchResult result) {
+        return result.getFailures().stream()
+                .map(BatchResult.Failure::getIndex)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachedJsonHttpMessageConverterTest {
+    private final TestRestTemplate restTemplate;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        TestData.clear(filmStorage, userStorage);
+    }
+
+    @Test
+    void filmsAreSerializedAsByJackson() throws Exception {
+        Film film = filmStorage.addFilm(TestData.film("Первый", 1));
+        filmStorage.addFilm(TestData.film("Второй", 1));
+        assertResponse("/films/" + film.getId(), filmStorage.getFilmById(film.getId()));
+        assertResponse("/films", filmStorage.getAllFilms());
+
+        assertResponse("/films", filmStorage.getAllFilms());
+        assertResponse("/films/popular", filmStorage.getFilmsByCount(10, null, null, null));
+    }
+
+    @Test
+    void updatedFilmIsSerializedAgain() throws Exception {
+        Film film = filmStorage.addFilm(TestData.film("Старое название", 1));
+        assertResponse("/films/" + film.getId(), filmStorage.getFilmById(film.getId()));
+
+        filmStorage.updateFilm(film.toBuilder().name("Новое название").genres(List.of(Genre.builder().id(2).build()))
+                .build());
+
+        Film updated = filmStorage.getFilmById(film.getId());
+        assertEquals("Новое название", updated.getName());
+        assertResponse("/films/" + film.getId(), updated);
+        assertResponse("/films", List.of(updated));
+    }
+
+    @Test
+    void usersAreSerializedAsByJackson() throws Exception {
+        User user = userStorage.addUser(TestData.user("json"));
+        assertResponse("/users/" + user.getId(), userStorage.getUserById(user.getId()));
+
+        userStorage.updateUser(user.toBuilder().name("Другое имя").build());
+
+        assertResponse("/users/" + user.getId(), userStorage.getUserById(user.getId()));
+    }
+
+    private void assertResponse(String url, Object expected) throws Exception {
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+        assertEquals(objectMapper.writeValueAsString(expected), response.getBody());
+    }
+}
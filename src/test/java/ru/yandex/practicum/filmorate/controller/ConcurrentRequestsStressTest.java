@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ConcurrentRequestsStressTest {
+    private static final int THREADS = 16;
+    private static final int FILMS = 40;
+    private static final int USERS = 40;
+    private static final int ROUNDS = 20;
+
+    private final TestRestTemplate restTemplate;
+    private final Map<Integer, Set<Integer>> likedFilms = new ConcurrentHashMap<>();
+
+    @Test
+    void concurrentRequestsReturnConsistentResults() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Map<Integer, Film> films = createFilms(executor);
+            Map<Integer, User> users = createUsers(executor);
+            List<Integer> filmIds = new ArrayList<>(films.keySet());
+            List<Integer> userIds = new ArrayList<>(users.keySet());
+
+            Map<Integer, Integer> expectedLikes = new ConcurrentHashMap<>();
+            Map<Integer, Set<Integer>> expectedFriends = new ConcurrentHashMap<>();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                int userId = userIds.get(i);
+                tasks.add(() -> {
+                    Random random = new Random(userId);
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int filmId = filmIds.get(random.nextInt(FILMS));
+                        int friendId = userIds.get(random.nextInt(USERS));
+                        verifyFilm(films.get(filmId));
+                        verifyUser(users.get(friendId));
+                        verifyReferenceData(random.nextInt(5) + 1, random.nextInt(6) + 1);
+                        if (addLike(filmId, userId)) {
+                            expectedLikes.merge(filmId, 1, Integer::sum);
+                        }
+                        if (friendId != userId) {
+                            addFriend(userId, friendId);
+                            expectedFriends.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet())
+                                    .add(friendId);
+                        }
+                        verifyPopularFilms();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+
+            Film[] popular = get("/films/popular?count=" + FILMS, Film[].class);
+            assertEquals(FILMS, popular.length, "Неверное количество популярных фильмов");
+            List<Integer> likes = Arrays.stream(popular)
+                    .map(film -> expectedLikes.getOrDefault(film.getId(), 0))
+                    .collect(Collectors.toList());
+            List<Integer> sortedLikes = new ArrayList<>(likes);
+            sortedLikes.sort(Comparator.reverseOrder());
+            assertEquals(sortedLikes, likes, "Популярные фильмы упорядочены неверно");
+            for (int userId : userIds) {
+                Set<Integer> friends = Arrays.stream(get("/users/" + userId + "/friends", User[].class))
+                        .map(User::getId)
+                        .collect(Collectors.toSet());
+                assertEquals(expectedFriends.getOrDefault(userId, Set.of()), friends,
+                        "Неверный список друзей пользователя " + userId);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<Integer, Film> createFilms(ExecutorService executor) throws Exception {
+        List<Callable<Film>> tasks = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = Film.builder()
+                    .name("Фильм " + i)
+                    .description("Описание " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i))
+                    .duration(90 + i)
+                    .mpa(MPA.builder().id(i % 5 + 1).build())
+                    .genres(List.of(Genre.builder().id(i % 6 + 1).build()))
+                    .build();
+            tasks.add(() -> {
+                ResponseEntity<Film> response = restTemplate.postForEntity("/films", film, Film.class);
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                Film created = response.getBody();
+                assertNotNull(created);
+                assertEquals(film.getName(), created.getName(), "Создан не тот фильм");
+                return created;
+            });
+        }
+        Map<Integer, Film> films = new HashMap<>();
+        for (Future<Film> future : executor.invokeAll(tasks)) {
+            Film film = future.get(1, TimeUnit.MINUTES);
+            films.put(film.getId(), film);
+        }
+        assertEquals(FILMS, films.size(), "Фильмы получили одинаковые идентификаторы");
+        return films;
+    }
+
+    private Map<Integer, User> createUsers(ExecutorService executor) throws Exception {
+        List<Callable<User>> tasks = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("Пользователь " + i)
+                    .birthday(LocalDate.of(1990, 1, 1).plusDays(i))
+                    .build();
+            tasks.add(() -> {
+                ResponseEntity<User> response = restTemplate.postForEntity("/users", user, User.class);
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                User created = response.getBody();
+                assertNotNull(created);
+                assertEquals(user.getLogin(), created.getLogin(), "Создан не тот пользователь");
+                return created;
+            });
+        }
+        Map<Integer, User> users = new HashMap<>();
+        for (Future<User> future : executor.invokeAll(tasks)) {
+            User user = future.get(1, TimeUnit.MINUTES);
+            users.put(user.getId(), user);
+        }
+        assertEquals(USERS, users.size(), "Пользователи получили одинаковые идентификаторы");
+        return users;
+    }
+
+    private void verifyFilm(Film expected) {
+        Film film = get("/films/" + expected.getId(), Film.class);
+        assertEquals(expected.getId(), film.getId(), "Получен не тот фильм");
+        assertEquals(expected.getName(), film.getName(), "Получен не тот фильм");
+        assertEquals(expected.getMpa().getId(), film.getMpa().getId(), "Неверный рейтинг фильма");
+        assertEquals(expected.getGenres().get(0).getId(), film.getGenres().get(0).getId(), "Неверный жанр фильма");
+    }
+
+    private void verifyUser(User expected) {
+        User user = get("/users/" + expected.getId(), User.class);
+        assertEquals(expected.getId(), user.getId(), "Получен не тот пользователь");
+        assertEquals(expected.getLogin(), user.getLogin(), "Получен не тот пользователь");
+    }
+
+    private void verifyReferenceData(int mpaId, int genreId) {
+        assertEquals(mpaId, get("/mpa/" + mpaId, MPA.class).getId(), "Получен не тот mpa");
+        assertEquals(genreId, get("/genres/" + genreId, Genre.class).getId(), "Получен не тот жанр");
+        assertEquals(5, get("/mpa", MPA[].class).length, "Неверное количество mpa");
+        assertEquals(6, get("/genres", Genre[].class).length, "Неверное количество жанров");
+    }
+
+    private void verifyPopularFilms() {
+        Film[] popular = get("/films/popular?count=5", Film[].class);
+        assertEquals(5, popular.length, "Неверное количество популярных фильмов");
+        assertEquals(5, Arrays.stream(popular).map(Film::getId).distinct().count(), "Фильмы повторяются");
+    }
+
+    private boolean addLike(int filmId, int userId) {
+        List<Integer> before = Arrays.stream(get("/films/popular?count=" + FILMS, Film[].class))
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        assertTrue(before.contains(filmId), "Фильм пропал из рейтинга");
+        ResponseEntity<Boolean> response = restTemplate.exchange("/films/" + filmId + "/like/" + userId,
+                HttpMethod.PUT, null, Boolean.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return likedFilms.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(filmId);
+    }
+
+    private void addFriend(int userId, int friendId) {
+        ResponseEntity<Boolean> response = restTemplate.exchange("/users/" + userId + "/friends/" + friendId,
+                HttpMethod.PUT, null, Boolean.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    private <T> T get(String url, Class<T> type) {
+        ResponseEntity<T> response = restTemplate.getForEntity(url, type);
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "Ошибка запроса " + url);
+        assertNotNull(response.getBody());
+        return response.getBody();
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ConditionalRequestsTest {
+    private final TestRestTemplate restTemplate;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        TestData.clear(filmStorage, userStorage);
+    }
+
+    @Test
+    void dictionaryIsNotModified() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/genres", String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("max-age=3600, public", response.getHeaders().getCacheControl());
+        String etag = response.getHeaders().getETag();
+        assertNotNull(etag);
+        double notModified = count("genres", "not-modified");
+
+        ResponseEntity<String> cached = get("/genres", etag);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, cached.getStatusCode());
+        assertNull(cached.getBody());
+        assertEquals(etag, cached.getHeaders().getETag());
+        assertEquals(notModified + 1, count("genres", "not-modified"));
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/genres/1", etag).getStatusCode());
+    }
+
+    @Test
+    void popularFilmsAreModifiedByLike() {
+        Film film = filmStorage.addFilm(TestData.film("Фильм"));
+        User user = userStorage.addUser(TestData.user("etag"));
+        ResponseEntity<String> response = restTemplate.getForEntity("/films/popular", String.class);
+        assertEquals("no-cache", response.getHeaders().getCacheControl());
+        String etag = response.getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/films/popular", etag).getStatusCode());
+
+        filmStorage.addLike(film.getId(), user.getId());
+        ResponseEntity<String> modified = get("/films/popular", etag);
+
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertNotEquals(etag, modified.getHeaders().getETag());
+    }
+
+    @Test
+    void deletingUsersResetsLikesOfPopularFilms() {
+        Film first = filmStorage.addFilm(TestData.film("Первый"));
+        Film second = filmStorage.addFilm(TestData.film("Второй"));
+        User user = userStorage.addUser(TestData.user("liker"));
+        filmStorage.addLike(second.getId(), user.getId());
+        assertEquals(second.getId(), filmStorage.getFilmsByCount(1, null, null, null).get(0).getId());
+        String etag = restTemplate.getForEntity("/films/popular", String.class).getHeaders().getETag();
+
+        userStorage.deleteStorage();
+
+        assertEquals(HttpStatus.OK, get("/films/popular", etag).getStatusCode(),
+                "Удаление лайков вместе с пользователями должно менять рейтинг");
+        assertEquals(first.getId(), filmStorage.getFilmsByCount(1, null, null, null).get(0).getId(),
+                "Лайки удалённых пользователей не должны учитываться в рейтинге");
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class,
+                second.getId()), "Счётчик лайков должен обнуляться");
+        assertEquals(2, filmStorage.getAllFilms().size(), "Фильмы должны оставаться");
+    }
+
+    @Test
+    void filmIsModifiedByUpdateOnly() {
+        Film film = filmStorage.addFilm(TestData.film("Фильм"));
+        Film other = filmStorage.addFilm(TestData.film("Фильм"));
+        String etag = restTemplate.getForEntity("/films/" + film.getId(), String.class).getHeaders().getETag();
+
+        filmStorage.updateFilm(other.toBuilder().name("Другой фильм").build());
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/films/" + film.getId(), etag).getStatusCode());
+
+        filmStorage.updateFilm(film.toBuilder().name("Новое название").build());
+        ResponseEntity<String> modified = get("/films/" + film.getId(), etag);
+
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertNotEquals(etag, modified.getHeaders().getETag());
+    }
+
+    @Test
+    void invalidIdsAreRejectedBeforeETagCheck() {
+        String genresEtag = restTemplate.getForEntity("/genres", String.class).getHeaders().getETag();
+        String mpaEtag = restTemplate.getForEntity("/mpa", String.class).getHeaders().getETag();
+        double filmChecks = count("film", "modified") + count("film", "not-modified");
+
+        assertEquals(HttpStatus.NOT_FOUND, get("/genres/9999", genresEtag).getStatusCode(),
+                "Несуществующий жанр не должен подтверждаться ответом 304");
+        assertEquals(HttpStatus.NOT_FOUND, get("/mpa/9999", mpaEtag).getStatusCode(),
+                "Несуществующий рейтинг MPA не должен подтверждаться ответом 304");
+        assertEquals(HttpStatus.NOT_FOUND, get("/films/0", genresEtag).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, get("/films/9999", genresEtag).getStatusCode());
+        assertEquals(filmChecks, count("film", "modified") + count("film", "not-modified"),
+                "Версия фильма не должна вычисляться для недопустимого идентификатора");
+    }
+
+    private ResponseEntity<String> get(String url, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private double count(String resource, String result) {
+        Counter counter = meterRegistry.find("filmorate.http.conditional").tag("resource", resource)
+                .tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmDbStorageStatementCountTest {
+    private static final AtomicInteger statements = new AtomicInteger();
+    private static final AtomicInteger connections = new AtomicInteger();
+
+    private final FilmStorage filmStorage;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage.deleteStorage();
+    }
+
+    @Test
+    void getAllFilmsDoesNotDependOnFilmCount() {
+        addFilms(3);
+        int fewFilms = countStatements(() -> assertEquals(3, filmStorage.getAllFilms().size()));
+        addFilms(30);
+        int manyFilms = countStatements(() -> assertEquals(33, filmStorage.getAllFilms().size()));
+
+        assertEquals(2, fewFilms, "Фильмы и жанры должны загружаться двумя запросами");
+        assertEquals(fewFilms, manyFilms, "Количество запросов не должно зависеть от количества фильмов");
+    }
+
+    @Test
+    void getFilmsByCountDoesNotDependOnFilmCount() {
+        addFilms(30);
+        int fewFilms = countStatements(() -> assertEquals(3,
+                filmStorage.getFilmsByCount(3, null, null, null).size()));
+        int manyFilms = countStatements(() -> assertEquals(30,
+                filmStorage.getFilmsByCount(30, null, null, null).size()));
+        int filtered = countStatements(() -> assertEquals(30,
+                filmStorage.getFilmsByCount(30, 2, 1, 2000).size()));
+
+        assertEquals(fewFilms, manyFilms, "Количество запросов не должно зависеть от количества фильмов");
+        assertEquals(manyFilms, filtered, "Фильтры не должны добавлять запросов");
+    }
+
+    @Test
+    void getFilmByIdLoadsGenresWithSingleQuery() {
+        Film film = addFilms(1).get(0);
+        int byId = countStatements(() -> assertEquals(2, filmStorage.getFilmById(film.getId()).getGenres().size()));
+        int all = countStatements(() -> filmStorage.getAllFilms());
+
+        assertEquals(all, byId, "Фильм и его жанры должны загружаться без отдельной проверки существования");
+    }
+
+    @Test
+    void getFilmsByIdsDoesNotDependOnFilmCount() {
+        List<Integer> ids = addFilms(30).stream().map(Film::getId).collect(Collectors.toList());
+        int fewFilms = countStatements(() -> assertEquals(3, filmStorage.getFilmsByIds(ids.subList(0, 3)).size()));
+        int manyFilms = countStatements(() -> assertEquals(30, filmStorage.getFilmsByIds(ids).size()));
+
+        assertEquals(2, manyFilms, "Фильмы и жанры должны загружаться двумя запросами");
+        assertEquals(fewFilms, manyFilms, "Количество запросов не должно зависеть от количества фильмов");
+    }
+
+    @Test
+    void missingFilmIsDetectedByPrimaryStatement() {
+        int byId = countStatements(() -> assertThrows(NotFoundException.class, () -> filmStorage.getFilmById(-1)));
+
+        assertEquals(1, byId, "Отсутствие фильма должно определяться основным запросом");
+    }
+
+    @Test
+    void missingLikeParticipantIsNamedInError() {
+        Film film = addFilms(1).get(0);
+
+        NotFoundException missingUser = assertThrows(NotFoundException.class,
+                () -> filmStorage.addLike(film.getId(), -1));
+        NotFoundException missingFilm = assertThrows(NotFoundException.class, () -> filmStorage.addLike(-1, -1));
+
+        assertEquals("Пользователь с идентификатором id = -1 не существует", missingUser.getMessage());
+        assertEquals("Фильм с идентификатором id = -1 не существует", missingFilm.getMessage(),
+                "Отсутствие фильма не должно выдаваться за отсутствие пользователя");
+    }
+
+    @Test
+    void getFilmByIdIsCachedUntilFilmIsUpdated() {
+        Film film = addFilms(1).get(0);
+        filmStorage.getFilmById(film.getId());
+
+        assertEquals(0, countStatements(() -> filmStorage.getFilmById(film.getId())),
+                "Повторное получение фильма должно обслуживаться из кэша");
+
+        filmStorage.updateFilm(film.toBuilder().name("Новое название").genres(List.of()).build());
+        Film updated = filmStorage.getFilmById(film.getId());
+
+        assertEquals("Новое название", updated.getName(), "После обновления фильм должен перечитываться");
+        assertEquals(0, updated.getGenres().size(), "После обновления жанры должны перечитываться");
+    }
+
+    @Test
+    void filmWritesUseOneConnectionAndAreAtomic() {
+        Film film = addFilms(1).get(0);
+
+        assertEquals(1, countConnections(() -> filmStorage.addFilm(film.toBuilder().id(null).build())),
+                "Добавление фильма с жанрами должно выполняться в одной транзакции");
+        assertEquals(1, countConnections(() -> filmStorage.updateFilm(film.toBuilder().name("Новое").build())),
+                "Обновление фильма с жанрами должно выполняться в одной транзакции");
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.addFilm(film.toBuilder()
+                .id(null)
+                .name("Фильм с несуществующим жанром")
+                .genres(List.of(Genre.builder().id(999).build()))
+                .build()));
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.updateFilm(film.toBuilder()
+                .name("Фильм с несуществующим жанром")
+                .genres(List.of(Genre.builder().id(999).build()))
+                .build()));
+
+        List<Film> films = filmStorage.getAllFilms();
+        assertEquals(2, films.size(), "Фильм с ошибкой в жанрах не должен сохраняться");
+        assertEquals("Новое", filmStorage.getFilmById(film.getId()).getName(),
+                "Обновление с ошибкой в жанрах должно откатываться целиком");
+        assertEquals(2, filmStorage.getFilmById(film.getId()).getGenres().size(),
+                "Жанры фильма не должны теряться при откате обновления");
+    }
+
+    @Test
+    void updateFilmWritesOnlyChangedGenres() {
+        Film film = addFilms(1).get(0);
+        List<Genre> sameGenres = List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build(),
+                Genre.builder().id(2).build());
+        Film[] updated = new Film[1];
+
+        int unchanged = countStatements(() -> updated[0] = filmStorage.updateFilm(film.toBuilder()
+                .genres(sameGenres)
+                .build()));
+
+        assertEquals(2, unchanged, "При неизменных жанрах должны выполняться только обновление и чтение жанров");
+        assertEquals(List.of(1, 2), genreIds(updated[0]), "Жанры должны возвращаться по возрастанию без повторов");
+        assertEquals("Комедия", updated[0].getGenres().get(0).getName(), "Жанры должны возвращаться с названиями");
+
+        int changed = countStatements(() -> updated[0] = filmStorage.updateFilm(film.toBuilder()
+                .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(2).build()))
+                .build()));
+
+        assertEquals(4, changed, "Должны удаляться и добавляться только изменившиеся жанры");
+        assertEquals(List.of(2, 3), genreIds(updated[0]), "Неверные жанры после обновления");
+        assertEquals(List.of(2, 3), genreIds(filmStorage.getFilmById(film.getId())), "Жанры сохранены неверно");
+    }
+
+    private static List<Integer> genreIds(Film film) {
+        return film.getGenres().stream().map(Genre::getId).collect(Collectors.toList());
+    }
+
+    private List<Film> addFilms(int count) {
+        Film film = Film.builder()
+                .name("Название")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(30)
+                .mpa(MPA.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build();
+        for (int i = 0; i < count; i++) {
+            filmStorage.addFilm(film);
+        }
+        return filmStorage.getAllFilms();
+    }
+
+    private static int countStatements(Runnable action) {
+        statements.set(0);
+        action.run();
+        return statements.get();
+    }
+
+    private static int countConnections(Runnable action) {
+        connections.set(0);
+        action.run();
+        return connections.get();
+    }
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource) {
+                        return new StatementCountingDataSource((DataSource) bean);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+        StatementCountingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            connections.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("prepareCall")
+                                || name.equals("createStatement")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.film.LikeIndex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmRecommenderTest {
+    private LikeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LikeIndex();
+    }
+
+    @Test
+    void recommendsFilmsOfMostSimilarUsers() {
+        index.rebuild(Map.of(
+                1, new int[]{10, 11, 12},
+                2, new int[]{10, 11, 20},
+                3, new int[]{12, 21},
+                4, new int[]{30}));
+        FilmRecommender recommender = new FilmRecommender(index, 50, 200_000, 50_000);
+
+        assertArrayEquals(new int[]{20, 21}, recommender.recommend(1, 10), "Неверный порядок рекомендаций");
+        assertArrayEquals(new int[]{20}, recommender.recommend(1, 1), "Неверное количество рекомендаций");
+        assertArrayEquals(new int[0], recommender.recommend(4, 10), "Без похожих пользователей рекомендаций нет");
+        assertArrayEquals(new int[0], recommender.recommend(5, 10), "Без лайков рекомендаций быть не должно");
+
+        index.addLike(20, 1);
+        index.removeLike(12, 1);
+
+        assertArrayEquals(new int[0], recommender.recommend(1, 10), "Рекомендации должны учитывать изменения");
+    }
+
+    @Test
+    void onlyTheMostSimilarUsersAreScored() {
+        index.rebuild(Map.of(
+                1, new int[]{10, 11},
+                2, new int[]{10, 11, 20},
+                3, new int[]{10, 21, 22}));
+
+        assertArrayEquals(new int[]{20}, new FilmRecommender(index, 1, 200_000, 50_000).recommend(1, 10),
+                "Должны учитываться только самые похожие пользователи");
+    }
+
+    @Test
+    void parallelAndSequentialScoringAgreeOnLargeDataset() {
+        Random random = new Random(42);
+        Map<Integer, int[]> likes = new HashMap<>();
+        for (int user = 1; user <= 2000; user++) {
+            likes.put(user, random.ints(1, 3000).distinct().limit(50).toArray());
+        }
+        index.rebuild(likes);
+
+        int[] sequential = new FilmRecommender(index, 50, 200_000, Integer.MAX_VALUE).recommend(1, 100);
+        int[] parallel = new FilmRecommender(index, 50, 200_000, 0).recommend(1, 100);
+
+        assertEquals(100, sequential.length, "Должно вернуться запрошенное количество рекомендаций");
+        assertArrayEquals(sequential, parallel, "Параллельный подсчёт должен давать тот же результат");
+    }
+
+    @Test
+    void likersOfHotFilmStaySortedAcrossChunks() {
+        Map<Integer, int[]> likes = new HashMap<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int user = 2; user <= 4000; user += 2) {
+            likes.put(user, new int[]{1});
+            expected.add(user);
+        }
+        index.rebuild(likes);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int user = 1 + random.nextInt(4000);
+            if (random.nextBoolean()) {
+                index.addLike(1, user);
+                expected.add(user);
+            } else {
+                index.removeLike(1, user);
+                expected.remove(user);
+            }
+        }
+
+        int[] likers = expected.stream().mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(likers, index.getLikers(1), "Список лайкнувших должен оставаться отсортированным");
+        assertEquals(likers.length, index.countLikers(1), "Неверное количество лайкнувших");
+        assertArrayEquals(Arrays.copyOf(likers, 700), index.getLikers(1, 700), "Неверное начало списка");
+        for (int user : likers) {
+            index.removeLike(1, user);
+        }
+        assertArrayEquals(new int[0], index.getLikers(1), "После удаления всех лайков список должен быть пуст");
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmSearchIndexTest {
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FilmSearchIndex(new SimpleMeterRegistry());
+        index.index(1, "Ёлки", "Новогодняя комедия о чудесах");
+        index.index(2, "Чудеса на виражах", "Комедия");
+        index.index(3, "Терминатор 2", "Судный день. Terminator returns");
+        index.index(4, "Ирония судьбы", "Новогодняя история");
+    }
+
+    @Test
+    void searchIsCaseInsensitiveAndFoldsYo() {
+        assertArrayEquals(new int[]{1}, index.search("ЕЛКИ", true, true, 10), "Поиск должен учитывать «ё»");
+        assertArrayEquals(new int[]{3}, index.search("TERMINATOR", true, true, 10), "Поиск должен быть без регистра");
+        assertArrayEquals(new int[]{3}, index.search("терминатор 2", true, true, 10), "Неверный поиск по словам");
+    }
+
+    @Test
+    void titleMatchesRankAboveDescriptionMatches() {
+        assertArrayEquals(new int[]{2, 1}, index.search("чудеса", true, true, 10), "Неверный порядок результатов");
+        assertArrayEquals(new int[]{1}, index.search("чудеса", false, true, 10), "Неверный поиск по описанию");
+        assertArrayEquals(new int[]{2}, index.search("чудеса", true, false, 10), "Неверный поиск по названию");
+    }
+
+    @Test
+    void lastWordMatchesAsPrefixAndAllWordsAreRequired() {
+        assertArrayEquals(new int[]{1, 4}, index.search("новогод", true, true, 10), "Неверный поиск по префиксу");
+        assertArrayEquals(new int[]{1}, index.search("новогодняя ком", true, true, 10),
+                "Должны находиться фильмы со всеми словами запроса");
+        assertArrayEquals(new int[0], index.search("новогод комедия", true, true, 10),
+                "Префиксом может быть только последнее слово");
+        assertArrayEquals(new int[0], index.search("  ,. ", true, true, 10), "Пустой запрос ничего не находит");
+    }
+
+    @Test
+    void reindexingReplacesOldWords() {
+        long memory = index.estimatedMemoryBytes();
+
+        index.index(3, "Терминатор 3", "Восстание машин");
+
+        assertArrayEquals(new int[0], index.search("судный", true, true, 10), "Старые слова должны удаляться");
+        assertArrayEquals(new int[]{3}, index.search("машин", true, true, 10), "Новые слова должны находиться");
+        assertTrue(index.estimatedMemoryBytes() < memory, "Оценка памяти должна учитывать удалённые слова");
+    }
+
+    @Test
+    void loaderBuildsTheSameIndexAsIncrementalUpdates() {
+        FilmSearchIndex loaded = new FilmSearchIndex(new SimpleMeterRegistry());
+        FilmSearchIndex.Loader loader = loaded.loader();
+        loader.add(4, "Ирония судьбы", "Новогодняя история");
+        loader.add(1, "Ёлки", "Новогодняя комедия о чудесах");
+        loader.add(2, "Чудеса на виражах", "Комедия");
+        loader.add(3, "Терминатор 2", "Судный день. Terminator returns");
+        loader.finish();
+
+        assertEquals(index.estimatedMemoryBytes(), loaded.estimatedMemoryBytes(), "Неверная оценка памяти");
+        for (String query : new String[]{"новогод", "комедия", "чудеса", "терм"}) {
+            assertArrayEquals(index.search(query, true, true, 10), loaded.search(query, true, true, 10),
+                    "Неверный результат поиска по загруженному индексу: " + query);
+        }
+    }
+
+    @Test
+    void batchBuildsTheSameIndexAsIncrementalUpdates() {
+        FilmSearchIndex batched = new FilmSearchIndex(new SimpleMeterRegistry());
+        batched.index(1, "Ёлки", "Новогодняя комедия о чудесах");
+        batched.index(3, "Терминатор", "Восстание машин");
+        batched.indexAll(List.of(
+                film(4, "Ирония судьбы", "Новогодняя история"),
+                film(3, "Терминатор 2", "Судный день. Terminator returns"),
+                film(2, "Чудеса на виражах", "Комедия")));
+
+        assertEquals(index.estimatedMemoryBytes(), batched.estimatedMemoryBytes(), "Неверная оценка памяти");
+        for (String query : new String[]{"новогод", "комедия", "чудеса", "терм", "машин"}) {
+            assertArrayEquals(index.search(query, true, true, 10), batched.search(query, true, true, 10),
+                    "Неверный результат поиска после пакетного индексирования: " + query);
+        }
+    }
+
+    private static Film film(int id, String name, String description) {
+        return Film.builder().id(id).name(name).description(description).build();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class FriendGraphIndexTest {
+    private FriendGraphIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FriendGraphIndex();
+    }
+
+    @Test
+    void friendsStaySortedAfterChanges() {
+        index.rebuild(Map.of(1, new int[]{5, 3, 9}));
+        index.addFriend(1, 4);
+        index.addFriend(1, 4);
+        index.removeFriend(1, 9);
+        index.addFriend(2, 3);
+        index.removeFriend(2, 3);
+
+        assertArrayEquals(new int[]{3, 4, 5}, index.getFriends(1), "Неверный список друзей");
+        assertArrayEquals(new int[0], index.getFriends(2), "Список друзей должен быть пустым");
+    }
+
+    @Test
+    void mutualFriendsMatchSetIntersection() {
+        Random random = new Random(42);
+        for (int[] sizes : new int[][]{{50, 60}, {3, 1000}, {1000, 3}, {0, 10}}) {
+            TreeSet<Integer> left = randomFriends(random, sizes[0]);
+            TreeSet<Integer> right = randomFriends(random, sizes[1]);
+            index.rebuild(Map.of(1, toArray(left), 2, toArray(right)));
+            TreeSet<Integer> expected = new TreeSet<>(left);
+            expected.retainAll(right);
+
+            assertArrayEquals(toArray(expected), index.getMutualFriends(1, 2), "Неверные общие друзья");
+            assertArrayEquals(toArray(expected), index.getMutualFriends(2, 1), "Неверные общие друзья");
+        }
+    }
+
+    private static TreeSet<Integer> randomFriends(Random random, int count) {
+        TreeSet<Integer> friends = new TreeSet<>();
+        IntStream.range(0, count).forEach(i -> friends.add(random.nextInt(2000) + 1));
+        return friends;
+    }
+
+    private static int[] toArray(TreeSet<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
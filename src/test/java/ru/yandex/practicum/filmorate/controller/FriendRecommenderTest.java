@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendRecommender;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendRecommenderTest {
+    private FriendGraphIndex index;
+    private FriendRecommender recommender;
+
+    @BeforeEach
+    void setUp() {
+        index = new FriendGraphIndex();
+        recommender = new FriendRecommender(index, 100, 1000, 200_000, 100, Duration.ofMinutes(10),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void recommendsFriendsOfFriendsByMutualFriendCount() {
+        index.rebuild(Map.of(
+                1, new int[]{2, 3, 4},
+                2, new int[]{1, 5, 6},
+                3, new int[]{6, 7, 4},
+                4, new int[]{6, 7}));
+
+        assertArrayEquals(new int[]{6, 7, 5}, recommender.recommend(1, 10), "Неверный порядок рекомендаций");
+        assertArrayEquals(new int[]{6}, recommender.recommend(1, 1), "Неверное количество рекомендаций");
+        assertArrayEquals(new int[0], recommender.recommend(5, 10), "Без друзей рекомендаций быть не должно");
+    }
+
+    @Test
+    void recommendationsAreRecomputedAfterFriendChanges() {
+        index.rebuild(Map.of(1, new int[]{2}, 2, new int[]{3}, 4, new int[]{1}));
+        assertArrayEquals(new int[]{3}, recommender.recommend(1, 10), "Неверные рекомендации");
+        assertArrayEquals(new int[]{2}, recommender.recommend(4, 10), "Неверные рекомендации");
+
+        index.addFriend(1, 3);
+        recommender.invalidate(1);
+
+        assertArrayEquals(new int[0], recommender.recommend(1, 10), "Друг не должен рекомендоваться");
+        assertArrayEquals(new int[]{2, 3}, recommender.recommend(4, 10),
+                "Рекомендации того, у кого пользователь в друзьях, должны пересчитываться");
+    }
+
+    @Test
+    void traversalIsBoundedForLargeFriendLists() {
+        Map<Integer, int[]> friends = new HashMap<>();
+        int[] userFriends = new int[5000];
+        for (int i = 0; i < userFriends.length; i++) {
+            userFriends[i] = i + 2;
+            int[] friendsOfFriend = new int[500];
+            for (int j = 0; j < friendsOfFriend.length; j++) {
+                friendsOfFriend[j] = 10_000 + (i * 7 + j * 13) % 50_000;
+            }
+            friends.put(i + 2, friendsOfFriend);
+        }
+        friends.put(1, userFriends);
+        index.rebuild(friends);
+
+        int[] recommended = recommender.recommend(1, 100);
+
+        assertEquals(100, recommended.length, "Должно вернуться запрошенное количество рекомендаций");
+        for (int id : recommended) {
+            assertTrue(id >= 10_000, "Друг пользователя не должен рекомендоваться");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+@ActiveProfiles("in-memory")
+@TestPropertySource(properties = "filmorate.storage.wal.enabled=false")
+public class InMemoryFilmStorageTest extends FilmDbStorageTest {
+    @Autowired
+    public InMemoryFilmStorageTest(FilmStorage filmStorage) {
+        super(filmStorage);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+
+@ActiveProfiles("in-memory")
+@TestPropertySource(properties = "filmorate.storage.wal.enabled=false")
+public class InMemoryGenreStorageTest extends GenreDbStorageTest {
+    @Autowired
+    public InMemoryGenreStorageTest(GenreStorage genreStorage) {
+        super(genreStorage);
+    }
+}
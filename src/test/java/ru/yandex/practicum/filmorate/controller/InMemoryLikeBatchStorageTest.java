@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+@ActiveProfiles("in-memory")
+@TestPropertySource(properties = "filmorate.storage.wal.enabled=false")
+public class InMemoryLikeBatchStorageTest extends LikeBatchDbStorageTest {
+    @Autowired
+    public InMemoryLikeBatchStorageTest(FilmStorage filmStorage, UserStorage userStorage) {
+        super(filmStorage, userStorage);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.storage.mpa.MPAStorage;
+
+@ActiveProfiles("in-memory")
+@TestPropertySource(properties = "filmorate.storage.wal.enabled=false")
+public class InMemoryMPAStorageTest extends MPADbStorageTest {
+    @Autowired
+    public InMemoryMPAStorageTest(MPAStorage mpaStorage, MeterRegistry meterRegistry) {
+        super(mpaStorage, meterRegistry);
+    }
+}
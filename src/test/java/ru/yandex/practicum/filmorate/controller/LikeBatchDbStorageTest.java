@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikeBatchDbStorageTest {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @AfterEach
+    void tearDown() {
+        TestData.clear(filmStorage, userStorage);
+    }
+
+    @Test
+    void batchWithMissingFilmOrUserIsRejected() {
+        Film film = filmStorage.addFilm(TestData.film("Фильм"));
+        User user = userStorage.addUser(TestData.user("batch"));
+        Like valid = like(film.getId(), user.getId());
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> filmStorage.addLikes(List.of(valid, like(film.getId(), user.getId() + 1000))),
+                "Пакет с несуществующим пользователем должен отклоняться");
+        assertThrows(DataIntegrityViolationException.class,
+                () -> filmStorage.addLikes(List.of(valid, like(film.getId() + 1000, user.getId()))),
+                "Пакет с несуществующим фильмом должен отклоняться");
+
+        assertEquals(1, filmStorage.addLikes(List.of(valid, valid)),
+                "Отклонённый пакет не должен добавлять лайков, а повторный лайк не должен быть ошибкой");
+    }
+
+    private static Like like(int filmId, int userId) {
+        return Like.builder().filmId(filmId).userId(userId).build();
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteQueue;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval=1h"})
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikeWriteBehindTest {
+    private static final String LIKE_COUNT = "SELECT like_count FROM films WHERE id = ?";
+    private static final String LIKES = "SELECT COUNT(*) FROM likes WHERE film_id = ?";
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LikeWriteQueue likeWriteQueue;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void queuedLikesAreVisibleInPopularFilmsAndWrittenOnFlush() {
+        int first = addFilm("Первый фильм");
+        int second = addFilm("Второй фильм");
+        int userId = addUser("first");
+        int otherUserId = addUser("second");
+
+        assertTrue(filmService.addLike(Optional.of(second), Optional.of(userId)), "Лайк должен приниматься");
+        assertTrue(filmService.addLike(Optional.of(second), Optional.of(otherUserId)), "Лайк должен приниматься");
+        assertTrue(filmService.addLike(Optional.of(first), Optional.of(userId)), "Лайк должен приниматься");
+        assertTrue(filmService.deleteLike(Optional.of(first), Optional.of(userId)),
+                "Удаление лайка из очереди должно находить лайк");
+        assertFalse(filmService.deleteLike(Optional.of(first), Optional.of(otherUserId)),
+                "Удаление несуществующего лайка должно возвращать false");
+        assertThrows(NotFoundException.class, () -> filmService.addLike(Optional.of(9999), Optional.of(userId)),
+                "Лайк несуществующему фильму должен отклоняться сразу");
+        assertThrows(NotFoundException.class, () -> filmService.addLike(Optional.of(first), Optional.of(9999)),
+                "Лайк от несуществующего пользователя должен отклоняться сразу");
+
+        assertEquals(second, filmService.getFilmsByCount(1, null, null, null).get(0).getId(),
+                "Рейтинг должен учитывать ещё не записанные лайки");
+        assertEquals(0, jdbcTemplate.queryForObject(LIKE_COUNT, Integer.class, second),
+                "До сброса очереди лайки не должны попадать в базу");
+
+        likeWriteQueue.flush();
+
+        assertEquals(2, jdbcTemplate.queryForObject(LIKE_COUNT, Integer.class, second),
+                "Неверное количество лайков в базе после сброса");
+        assertEquals(2, jdbcTemplate.queryForObject(LIKES, Integer.class, second), "Лайки не записаны в базу");
+        assertEquals(0, jdbcTemplate.queryForObject(LIKES, Integer.class, first),
+                "Схлопнутые лайк и удаление не должны оставлять записей");
+        assertTrue(filmService.addLike(Optional.of(second), Optional.of(userId)), "Лайк должен приниматься");
+        assertEquals(0, likeWriteQueue.size(), "Повторный лайк не должен попадать в очередь");
+        assertEquals(second, filmService.getFilmsByCount(1, null, null, null).get(0).getId(),
+                "Повторный лайк не должен менять рейтинг");
+    }
+
+    private int addFilm(String name) {
+        return filmService.addFilm(TestData.film(name)).getId();
+    }
+
+    private int addUser(String login) {
+        return userService.createUser(TestData.user(login)).getId();
+    }
+}
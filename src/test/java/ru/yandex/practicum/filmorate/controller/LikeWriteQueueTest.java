@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.TooManyRequestsException;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteQueue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LikeWriteQueueTest {
+    private final List<Map<Long, Boolean>> written = new ArrayList<>();
+    private LikeWriteQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new LikeWriteQueue(true, 3, 100, Duration.ofHours(1), new SimpleMeterRegistry());
+        queue.start(batch -> written.add(new HashMap<>(batch)));
+    }
+
+    @Test
+    void changesOfOnePairAreCoalesced() {
+        assertFalse(queue.submit(1, 2, true, () -> false), "Лайка до изменения не было");
+        assertTrue(queue.submit(1, 2, false, () -> false), "Должен учитываться лайк из очереди");
+        assertEquals(0, queue.size(), "Возврат к состоянию в базе должен убирать пару из очереди");
+        assertFalse(queue.submit(1, 2, true, () -> false), "Должно учитываться удаление из очереди");
+        assertTrue(queue.submit(1, 2, true, () -> false), "Повторный лайк должен видеть лайк из очереди");
+        assertEquals(1, queue.size(), "Изменения одной пары должны схлопываться");
+
+        queue.flush();
+
+        assertEquals(1, written.size(), "Ожидался один пакет");
+        assertEquals(Map.of((1L << 32) | 2, true), written.get(0), "В базу должно уйти последнее состояние");
+        assertEquals(0, queue.size(), "Очередь должна опустеть после записи");
+    }
+
+    @Test
+    void fullQueueRejectsNewPairs() {
+        queue.submit(1, 1, true, () -> false);
+        queue.submit(1, 2, true, () -> false);
+        queue.submit(1, 3, true, () -> false);
+
+        assertThrows(TooManyRequestsException.class, () -> queue.submit(1, 4, true, () -> false),
+                "Заполненная очередь должна отклонять новые пары");
+        assertTrue(queue.submit(1, 3, true, () -> false), "Пара из очереди должна приниматься и при заполнении");
+    }
+
+    @Test
+    void failedBatchIsRequeuedAndStopFlushesIt() {
+        LikeWriteQueue failing = new LikeWriteQueue(true, 10, 100, Duration.ofHours(1), new SimpleMeterRegistry());
+        boolean[] fail = {true};
+        failing.start(batch -> {
+            if (fail[0]) {
+                throw new IllegalStateException("База недоступна");
+            }
+            written.add(new HashMap<>(batch));
+        });
+        failing.submit(5, 6, true, () -> false);
+
+        failing.flush();
+
+        assertEquals(1, failing.size(), "Пакет должен вернуться в очередь после ошибки");
+        assertTrue(failing.submit(5, 6, true, () -> false), "Состояние пары не должно теряться после ошибки");
+        assertEquals(1, failing.size(), "Повторный лайк не должен добавлять изменение");
+
+        fail[0] = false;
+        failing.stop();
+
+        assertEquals(List.of(Map.of((5L << 32) | 6, true)), written, "Остановка должна дописывать очередь");
+        assertEquals(0, failing.size(), "После остановки очередь должна быть пуста");
+    }
+
+    @Test
+    void failedBatchDropsOppositeChangeQueuedDuringWrite() {
+        LikeWriteQueue failing = new LikeWriteQueue(true, 10, 100, Duration.ofHours(1), new SimpleMeterRegistry());
+        boolean[] fail = {true};
+        failing.start(batch -> {
+            if (fail[0]) {
+                assertTrue(failing.submit(5, 6, false, () -> false), "Во время записи должен учитываться лайк");
+                throw new IllegalStateException("База недоступна");
+            }
+            written.add(new HashMap<>(batch));
+        });
+        failing.submit(5, 6, true, () -> false);
+
+        failing.flush();
+
+        assertEquals(0, failing.size(), "Удаление незаписанного лайка совпадает с базой и не должно оставаться");
+        assertFalse(failing.submit(5, 6, false, () -> false), "Лайк не должен считаться стоящим");
+
+        fail[0] = false;
+        failing.flush();
+
+        assertTrue(written.isEmpty(), "В базу не должно уходить изменение, которое её не меняет");
+    }
+
+    @Test
+    void stopRetriesFinalFlushAndGivesUpAfterBoundedAttempts() {
+        LikeWriteQueue failing = new LikeWriteQueue(true, 10, 100, Duration.ofHours(1), new SimpleMeterRegistry());
+        int[] attempts = {0};
+        failing.start(batch -> {
+            if (++attempts[0] < 3) {
+                throw new IllegalStateException("База недоступна");
+            }
+            written.add(new HashMap<>(batch));
+        });
+        failing.submit(7, 8, true, () -> false);
+
+        failing.stop();
+
+        assertEquals(List.of(Map.of((7L << 32) | 8, true)), written, "Остановка должна повторять запись очереди");
+
+        LikeWriteQueue unavailable = new LikeWriteQueue(true, 10, 100, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+        unavailable.start(batch -> {
+            attempts[0]++;
+            throw new IllegalStateException("База недоступна");
+        });
+        unavailable.submit(7, 9, true, () -> false);
+        attempts[0] = 0;
+
+        unavailable.stop();
+
+        assertEquals(3, attempts[0], "Число попыток записи при остановке должно быть ограничено");
+        assertEquals(1, unavailable.size(), "Незаписанные изменения должны остаться в очереди");
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 public class MPADbStorageTest {
     @Qualifier("MPADBStorage")
     private final MPAStorage mpaStorage;
+    private final MeterRegistry meterRegistry;
 
     @Test
     public void findMPAById() {
@@ -46,4 +48,32 @@ public class MPADbStorageTest {
         assertEquals("R", mpas.get(3).getName());
     }
 
+    @Test
+    public void getMPAsWithoutReloadingDictionary() {
+        double reloads = meterRegistry.get("filmorate.dictionary.reloads").tag("dictionary", "mpa").counter().count();
+        double hits = meterRegistry.get("filmorate.dictionary.requests").tag("dictionary", "mpa")
+                .tag("result", "hit").counter().count();
+
+        mpaStorage.getAllMPAs();
+        mpaStorage.getMPAById(2);
+
+        assertEquals(reloads, meterRegistry.get("filmorate.dictionary.reloads").tag("dictionary", "mpa")
+                .counter().count(), "Справочник не должен перечитываться из базы");
+        assertEquals(hits + 2, meterRegistry.get("filmorate.dictionary.requests").tag("dictionary", "mpa")
+                .tag("result", "hit").counter().count(), "Запросы должны обслуживаться из памяти");
+    }
+
+    @Test
+    public void unknownMPAsDoNotReloadDictionaryOnEveryRequest() {
+        assertThrows(NotFoundException.class, () -> mpaStorage.getMPAById(9999));
+        double reloads = meterRegistry.get("filmorate.dictionary.reloads").tag("dictionary", "mpa").counter().count();
+
+        for (int i = 0; i < 100; i++) {
+            int id = 10_000 + i;
+            assertThrows(NotFoundException.class, () -> mpaStorage.getMPAById(id));
+        }
+
+        assertEquals(reloads, meterRegistry.get("filmorate.dictionary.reloads").tag("dictionary", "mpa")
+                .counter().count(), "Неизвестные идентификаторы не должны перечитывать справочник при каждом запросе");
+    }
 }
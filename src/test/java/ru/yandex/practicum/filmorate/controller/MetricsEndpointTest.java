@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@AutoConfigureMetrics
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class MetricsEndpointTest {
+    private static final String UPDATE_MPA = "UPDATE mpa SET name = name WHERE id = 1";
+    private static final String UPDATE_GENRE = "UPDATE genres SET name = name WHERE id = 1";
+
+    private final TestRestTemplate restTemplate;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    void prometheusEndpointExportsRequestStorageAndSqlMetrics() {
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/films", String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND,
+                restTemplate.getForEntity("/films/" + Integer.MAX_VALUE, String.class).getStatusCode());
+
+        String metrics = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket"), "Нет гистограммы времени запросов");
+        assertTrue(metrics.matches("(?s).*http_server_requests_seconds_count\\{[^}]*exception=\"NotFoundException\""
+                + "[^}]*uri=\"/films/\\{id}\".*"), "Нет счётчика ошибок эндпоинта");
+        assertTrue(metrics.matches("(?s).*filmorate_calls_seconds_count\\{[^}]*class=\"FilmDBStorage\""
+                + "[^}]*exception=\"NotFoundException\"[^}]*method=\"getFilmVersion\".*"), "Нет метрик хранилища");
+        assertTrue(metrics.contains("filmorate_calls_seconds_bucket{class=\"FilmService\""), "Нет метрик сервиса");
+        assertTrue(metrics.contains("filmorate_sql_seconds_count{exception=\"none\",sql=\"SELECT f.id"),
+                "Нет метрик SQL-запросов");
+    }
+
+    @Test
+    void statementBatchesAreTaggedWithTheirSql() throws Exception {
+        long sameSql = sqlCount(UPDATE_MPA);
+        long mixedSql = sqlCount("batch");
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.addBatch(UPDATE_MPA);
+            statement.addBatch(UPDATE_MPA);
+            statement.executeBatch();
+            statement.addBatch(UPDATE_MPA);
+            statement.addBatch(UPDATE_GENRE);
+            statement.executeBatch();
+        }
+
+        assertEquals(sameSql + 1, sqlCount(UPDATE_MPA), "Пакет одного запроса должен помечаться его текстом");
+        assertEquals(mixedSql + 1, sqlCount("batch"), "Пакет разных запросов должен помечаться тегом batch");
+    }
+
+    private long sqlCount(String sql) {
+        Timer timer = meterRegistry.find("filmorate.sql").tag("sql", sql).tag("exception", "none").timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
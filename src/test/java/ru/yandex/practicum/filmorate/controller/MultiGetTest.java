@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class MultiGetTest {
+    private final TestRestTemplate restTemplate;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        TestData.clear(filmStorage, userStorage);
+    }
+
+    @Test
+    void getFilmsInRequestOrderWithMissingIds() throws Exception {
+        Film first = filmStorage.addFilm(TestData.film("Первый"));
+        Film second = filmStorage.addFilm(TestData.film("Второй"));
+        filmStorage.getFilmById(second.getId());
+        int missing = second.getId() + 100;
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/films?ids={ids}", String.class,
+                second.getId() + "," + missing + "," + first.getId() + "," + second.getId());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(objectMapper.writeValueAsString(MultiGetResult.<Film>builder()
+                .items(List.of(filmStorage.getFilmById(second.getId()), filmStorage.getFilmById(first.getId())))
+                .missingIds(List.of(missing))
+                .build()), response.getBody());
+    }
+
+    @Test
+    void postUsersByIds() throws Exception {
+        User user = userStorage.addUser(TestData.user("multi"));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/users/by-ids", List.of(-1, user.getId()),
+                String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(objectMapper.writeValueAsString(MultiGetResult.<User>builder()
+                .items(List.of(userStorage.getUserById(user.getId())))
+                .missingIds(List.of(-1))
+                .build()), response.getBody());
+    }
+
+    @Test
+    void rejectInvalidIdLists() {
+        List<Integer> tooManyIds = IntStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+        List<Integer> withNull = new ArrayList<>(Arrays.asList(1, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity("/films/by-ids", tooManyIds, String.class)
+                .getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.postForEntity("/users/by-ids", withNull, String.class)
+                .getStatusCode());
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class PagingTest {
+    private final TestRestTemplate restTemplate;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        TestData.clear(filmStorage, userStorage);
+    }
+
+    @Test
+    void filmPagesFollowTheCursor() throws Exception {
+        Film first = filmStorage.addFilm(TestData.film("Первый", 1, 2));
+        Film second = filmStorage.addFilm(TestData.film("Второй"));
+        Film third = filmStorage.addFilm(TestData.film("Третий", 3));
+        int before = first.getId() - 1;
+
+        assertEquals(json(List.of(filmStorage.getFilmById(first.getId()), filmStorage.getFilmById(second.getId()))),
+                restTemplate.getForObject("/films?after={after}&limit=2", String.class, before));
+        assertEquals(json(List.of(filmStorage.getFilmById(third.getId()))),
+                restTemplate.getForObject("/films?after={after}&limit=2", String.class, second.getId()));
+        assertEquals("[]", restTemplate.getForObject("/films?after={after}", String.class, third.getId()));
+    }
+
+    @Test
+    void userPagesFollowTheCursor() throws Exception {
+        User first = userStorage.addUser(TestData.user("first"));
+        User second = userStorage.addUser(TestData.user("second"));
+
+        assertEquals(json(List.of(userStorage.getUserById(first.getId()))),
+                restTemplate.getForObject("/users?after={after}&limit=1", String.class, first.getId() - 1));
+        assertEquals(json(List.of(userStorage.getUserById(second.getId()))),
+                restTemplate.getForObject("/users?after={after}&limit=1", String.class, first.getId()));
+    }
+
+    @Test
+    void rejectInvalidPages() {
+        for (String resource : new String[]{"/films", "/users"}) {
+            assertEquals(HttpStatus.BAD_REQUEST, get(resource + "?limit=0", MediaType.APPLICATION_JSON)
+                    .getStatusCode(), "Размер страницы должен быть положительным");
+            assertEquals(HttpStatus.BAD_REQUEST, get(resource + "?limit=1001", MediaType.APPLICATION_JSON)
+                    .getStatusCode(), "Размер страницы должен быть ограничен");
+            assertEquals(HttpStatus.BAD_REQUEST, get(resource + "?after=-1&limit=10", MediaType.APPLICATION_JSON)
+                    .getStatusCode(), "Курсор страницы не может быть отрицательным");
+            assertEquals(HttpStatus.BAD_REQUEST, get(resource + "?after=-1", MediaType.APPLICATION_NDJSON)
+                    .getStatusCode(), "Курсор потока не может быть отрицательным");
+        }
+    }
+
+    @Test
+    void streamFilmsAsNdjsonWithGenresGroupedPerFilm() throws Exception {
+        Film first = filmStorage.addFilm(TestData.film("Первый", 1, 2, 3));
+        Film second = filmStorage.addFilm(TestData.film("Второй"));
+        Film third = filmStorage.addFilm(TestData.film("Третий", 6));
+
+        ResponseEntity<String> response = get("/films?after=" + first.getId(), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(response.getHeaders().getContentType()));
+        assertEquals(json(filmStorage.getFilmById(second.getId())) + "\n"
+                + json(filmStorage.getFilmById(third.getId())) + "\n", response.getBody());
+
+        String[] lines = get("/films?after=" + (first.getId() - 1), MediaType.APPLICATION_NDJSON).getBody()
+                .split("\n");
+        assertEquals(3, lines.length, "Каждый фильм должен выводиться одной строкой");
+        assertEquals(3, objectMapper.readValue(lines[0], Film.class).getGenres().size(),
+                "Жанры должны собираться в фильм, а не размножать его строки");
+    }
+
+    private ResponseEntity<String> get(String url, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
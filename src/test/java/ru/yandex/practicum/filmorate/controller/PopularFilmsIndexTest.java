@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PopularFilmsIndexTest {
+    private PopularFilmsIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PopularFilmsIndex();
+    }
+
+    @Test
+    void getTopOrdersByLikesThenById() {
+        index.rebuild(Map.of(1, 0, 2, 5, 3, 5, 4, 1));
+        index.addFilm(5);
+        index.changeLikes(4, 9);
+
+        assertEquals(List.of(4, 2, 3), index.getTop(3), "Неверный порядок фильмов");
+        assertEquals(List.of(4, 2, 3, 1, 5), index.getTop(10), "Неверный порядок фильмов");
+    }
+
+    @Test
+    void filteredTopContainsOnlyMatchingFilms() {
+        index.rebuild(Map.of(1, 5, 2, 4, 3, 3, 4, 2));
+        index.setCategories(1, List.of(1, 2), 1, 2000);
+        index.setCategories(2, List.of(2), 2, 2000);
+        index.setCategories(3, List.of(1), 1, 1999);
+        index.setCategories(4, List.of(), null, null);
+
+        assertEquals(List.of(1, 2, 3, 4), index.getTop(10), "Общий рейтинг должен содержать все фильмы");
+        assertEquals(List.of(1, 3), index.getTop(10, 1, null, null), "Неверный рейтинг жанра");
+        assertEquals(List.of(1, 2), index.getTop(10, null, null, 2000), "Неверный рейтинг года");
+        assertEquals(List.of(2), index.getTop(10, 2, 2, 2000), "Неверный рейтинг сочетания фильтров");
+        assertEquals(List.of(), index.getTop(10, 3, null, null), "Фильмов с таким жанром нет");
+        assertEquals(List.of(), index.getTop(10, -1, null, null), "Фильмов с таким жанром нет");
+
+        index.changeLikes(3, 10);
+        index.setCategories(1, List.of(2), 1, 2001);
+
+        assertEquals(List.of(3), index.getTop(10, 1, null, null), "Фильм должен покидать рейтинги старого жанра");
+        assertEquals(List.of(1, 2), index.getTop(10, 2, null, null), "Фильм должен попадать в рейтинги нового жанра");
+        assertEquals(List.of(3, 1), index.getTop(10, null, 1, null), "Лайки должны учитываться в рейтинге MPA");
+    }
+
+    @Test
+    void concurrentLikesKeepIndexConsistent() throws Exception {
+        int films = 20;
+        for (int i = 1; i <= films; i++) {
+            index.addFilm(i);
+        }
+        AtomicIntegerArray expected = new AtomicIntegerArray(films + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    int filmId = ThreadLocalRandom.current().nextInt(1, films + 1);
+                    int delta = ThreadLocalRandom.current().nextInt(4) == 0 ? -1 : 1;
+                    expected.addAndGet(filmId, delta);
+                    index.changeLikes(filmId, delta);
+                    List<Integer> top = index.getTop(films);
+                    assertEquals(top.size(), top.stream().distinct().count(), "Фильм попал в рейтинг дважды");
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Integer> top = index.getTop(films);
+        assertEquals(films, top.size(), "Неверное количество фильмов в рейтинге");
+        for (int i = 1; i <= films; i++) {
+            assertEquals(expected.get(i), index.getLikes(i), "Неверное количество лайков фильма " + i);
+        }
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(index.getLikes(top.get(i - 1)) >= index.getLikes(top.get(i)), "Рейтинг не упорядочен");
+        }
+    }
+
+    @Test
+    void changingCategoriesDuringClearDoesNotFail() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> clearing = executor.submit(() -> {
+            for (int i = 0; i < 2_000_000; i++) {
+                index.clear();
+            }
+        });
+        for (int i = 0; !clearing.isDone(); i++) {
+            index.setCategories(1, List.of(1 + i % 2), 1 + i % 3, 2000 + i % 5);
+        }
+        clearing.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        index.setCategories(1, List.of(1), 1, 2000);
+        assertEquals(List.of(1), index.getTop(10, 1, 1, 2000), "Фильм должен попадать в рейтинг после очистки");
+    }
+}
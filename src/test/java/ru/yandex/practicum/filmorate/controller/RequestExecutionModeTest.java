@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@Import(AsyncDispatchCounter.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class RequestExecutionModeTest {
+    private final TestRestTemplate restTemplate;
+    private final AsyncDispatchCounter asyncDispatches;
+
+    @Test
+    void blockingModeDoesNotDispatchAsync() {
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/films", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/users", String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/films/999999", String.class).getStatusCode());
+
+        assertEquals(0, asyncDispatches.get(), "В режиме blocking запросы не должны обрабатываться асинхронно");
+    }
+}
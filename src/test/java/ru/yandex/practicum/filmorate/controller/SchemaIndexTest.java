@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class SchemaIndexTest {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void likeLookupsUseIndexes() {
+        assertUsesIndex("SELECT 1 FROM likes WHERE film_id = 1 AND user_id = 1", "PRIMARY_KEY");
+        assertUsesIndex("SELECT film_id FROM likes WHERE user_id = 1", "LIKES_USER_ID_IDX");
+    }
+
+    @Test
+    void genreLookupsUseIndexes() {
+        assertUsesIndex("SELECT genre_id FROM film_genre WHERE film_id = 1", "PRIMARY_KEY");
+    }
+
+    @Test
+    void friendshipLookupsUseIndexes() {
+        assertUsesIndex("SELECT another_user_id FROM friendship WHERE user_id = 1", "PRIMARY_KEY");
+        assertUsesIndex("SELECT user_id FROM friendship WHERE another_user_id = 1",
+                "FRIENDSHIP_ANOTHER_USER_ID_IDX");
+    }
+
+    private void assertUsesIndex(String sql, String index) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertFalse(plan.contains("tableScan"), "Запрос не должен просматривать всю таблицу, план: " + plan);
+        assertTrue(plan.contains(index), "Запрос должен использовать индекс " + index + ", план: " + plan);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Фильмы и пользователи для тестов, работающих с общим контекстом приложения, и очистка хранилищ после них.
+ */
+final class TestData {
+    private TestData() {
+    }
+
+    static Film film(String name, int... genreIds) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(MPA.builder().id(1).build())
+                .genres(Arrays.stream(genreIds)
+                        .mapToObj(id -> Genre.builder().id(id).build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    static User user(String login) {
+        return User.builder()
+                .email(login + "@yandex.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+
+    static void clear(FilmStorage filmStorage, UserStorage userStorage) {
+        filmStorage.deleteStorage();
+        userStorage.deleteStorage();
+    }
+}
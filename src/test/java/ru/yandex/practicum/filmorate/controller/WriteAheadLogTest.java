@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverStorageFromLog() {
+        try (ConfigurableApplicationContext context = start("64MB")) {
+            fill(context);
+        }
+        try (ConfigurableApplicationContext context = start("64MB")) {
+            assertRecovered(context);
+        }
+    }
+
+    @Test
+    void recoverStorageFromSnapshot() throws IOException {
+        try (ConfigurableApplicationContext context = start("1KB")) {
+            fill(context);
+        }
+        assertFalse(files("snapshot-").isEmpty());
+        try (ConfigurableApplicationContext context = start("1KB")) {
+            assertRecovered(context);
+        }
+    }
+
+    @Test
+    void dropTornTailOfLog() throws IOException {
+        try (ConfigurableApplicationContext context = start("64MB")) {
+            fill(context);
+        }
+        Path segment = files("wal-").get(files("wal-").size() - 1);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (ConfigurableApplicationContext context = start("64MB")) {
+            assertRecovered(context);
+            context.getBean(FilmStorage.class).deleteLike(2, 2);
+        }
+        try (ConfigurableApplicationContext context = start("64MB")) {
+            assertEquals(List.of(1), context.getBean(FilmStorage.class).getFilmsByCount(1, null, null, null)
+                    .stream().map(Film::getId).collect(Collectors.toList()));
+        }
+    }
+
+    private void fill(ConfigurableApplicationContext context) {
+        UserStorage userStorage = context.getBean(UserStorage.class);
+        FilmStorage filmStorage = context.getBean(FilmStorage.class);
+        for (int i = 1; i <= 3; i++) {
+            userStorage.addUser(User.builder().email("user" + i + "@yandex.ru").login("user" + i)
+                    .name("Пользователь " + i).birthday(LocalDate.of(2000, 1, i)).build());
+            filmStorage.addFilm(Film.builder().name("Фильм " + i).description("Описание " + i)
+                    .releaseDate(LocalDate.of(2000, 1, i)).duration(100 + i).mpa(MPA.builder().id(i).build())
+                    .genres(List.of(Genre.builder().id(i).build())).build());
+        }
+        userStorage.updateUser(userStorage.getUserById(3).toBuilder().name("Третий").build());
+        userStorage.addFriend(1, 2);
+        userStorage.addFriend(1, 3);
+        userStorage.deleteFriend(1, 3);
+        filmStorage.addLikes(List.of(Like.builder().filmId(1).userId(1).build(),
+                Like.builder().filmId(1).userId(2).build(),
+                Like.builder().filmId(2).userId(3).build()));
+        filmStorage.addLike(2, 2);
+        filmStorage.deleteLike(2, 3);
+    }
+
+    private void assertRecovered(ConfigurableApplicationContext context) {
+        UserStorage userStorage = context.getBean(UserStorage.class);
+        FilmStorage filmStorage = context.getBean(FilmStorage.class);
+        assertEquals(3, userStorage.getAllUsers().size());
+        assertEquals("Третий", userStorage.getUserById(3).getName());
+        assertEquals(List.of(2), userStorage.getFriendsById(1).stream().map(User::getId)
+                .collect(Collectors.toList()));
+        Film film = filmStorage.getFilmById(2);
+        assertEquals("Фильм 2", film.getName());
+        assertEquals("PG", film.getMpa().getName());
+        assertEquals("Драма", film.getGenres().get(0).getName());
+        assertEquals(List.of(1, 2), filmStorage.getFilmsByCount(2, null, null, null).stream().map(Film::getId)
+                .collect(Collectors.toList()));
+        assertFalse(filmStorage.deleteLike(2, 3));
+        assertTrue(filmStorage.deleteLike(2, 2));
+        assertTrue(filmStorage.addLike(2, 2));
+        assertEquals(4, filmStorage.addFilm(filmStorage.getFilmById(1).toBuilder().id(null).build()).getId());
+        assertEquals(4, userStorage.addUser(userStorage.getUserById(1).toBuilder().id(null).build()).getId());
+    }
+
+    private ConfigurableApplicationContext start(String snapshotAfter) {
+        return new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("in-memory")
+                .run("--filmorate.storage.wal.directory=" + directory,
+                        "--filmorate.storage.wal.snapshot-after=" + snapshotAfter);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}